@@ -0,0 +1,97 @@
+package com.toast.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.toast.common.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache for user lookups.
+ * Users are stored once by id; usernames only map to ids so both keys
+ * are invalidated by evicting a single entry plus its username alias.
+ */
+@Component
+@Slf4j
+public class UserCache {
+
+    private final Cache<Long, User> usersById;
+    private final Cache<String, Long> idsByUsername;
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${user-cache.maximum-size:10000}") long maximumSize,
+                     @Value("${user-cache.ttl:10m}") Duration ttl) {
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByUsername = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, "users.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByUsername, "users.byUsername");
+    }
+
+    /**
+     * Get a user by id, loading it on a miss. Missing users are not cached.
+     */
+    public Optional<User> getById(Long id, Function<Long, Optional<User>> loader) {
+        return Optional.ofNullable(usersById.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Get a user by username, loading it on a miss. Missing users are not cached.
+     */
+    public Optional<User> getByUsername(String username, Supplier<Optional<User>> loader) {
+        Long id = idsByUsername.getIfPresent(username);
+        if (id != null) {
+            User cached = usersById.getIfPresent(id);
+            if (cached != null && username.equals(cached.getUsername())) {
+                return Optional.of(cached);
+            }
+        }
+
+        Optional<User> user = loader.get();
+        user.ifPresent(this::put);
+        return user;
+    }
+
+    public void put(User user) {
+        usersById.put(user.getId(), user);
+        idsByUsername.put(user.getUsername(), user.getId());
+    }
+
+    /**
+     * Evict a user from this instance only.
+     */
+    public void evict(Long id, String username) {
+        if (id != null) {
+            usersById.invalidate(id);
+        }
+        if (username != null) {
+            idsByUsername.invalidate(username);
+        }
+        log.debug("Evicted user {} ({}) from cache", id, username);
+    }
+
+    /**
+     * Evict every user from this instance only.
+     */
+    public void evictAll() {
+        usersById.invalidateAll();
+        idsByUsername.invalidateAll();
+        log.debug("Evicted all users from cache");
+    }
+}
@@ -1,11 +1,15 @@
 package com.toast.api.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.cache.UserCache;
 import com.toast.api.service.UserService;
 import com.toast.api.service.impl.UserServiceImpl;
+import com.toast.common.repository.UserOutboxRepository;
 import com.toast.common.repository.UserRepository;
 import dagger.Module;
 import dagger.Provides;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Singleton;
 
@@ -15,7 +19,8 @@ public class DaggerConfig {
 
     @Provides
     @Singleton
-    public UserService userService(UserRepository userRepository) {
-        return new UserServiceImpl(userRepository);
+    public UserService userService(UserRepository userRepository, UserOutboxRepository outboxRepository, UserCache userCache,
+                                   TransactionTemplate transactionTemplate, ObjectMapper objectMapper) {
+        return new UserServiceImpl(userRepository, outboxRepository, userCache, transactionTemplate, objectMapper);
     }
 } 
\ No newline at end of file
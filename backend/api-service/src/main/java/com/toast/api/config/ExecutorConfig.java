@@ -0,0 +1,26 @@
+package com.toast.api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs the long-lived Pulsar receive loops and other blocking background work.
+     * Uses one virtual thread per task when spring.threads.virtual.enabled is set,
+     * otherwise named platform threads, instead of the shared ForkJoin common pool.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService pulsarTaskExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("pulsar-vt-", 0).factory()
+                : Thread.ofPlatform().name("pulsar-", 0).daemon(true).factory();
+        return Executors.newThreadPerTaskExecutor(threadFactory);
+    }
+}
@@ -0,0 +1,25 @@
+package com.toast.api.config;
+
+import lombok.Data;
+import org.apache.pulsar.client.api.CompressionType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Producer compression codec per topic. Pulsar compresses whole batches on the producer,
+ * so batched topics benefit the most.
+ */
+@Data
+@ConfigurationProperties(prefix = "pulsar.compression")
+public class PulsarCompressionProperties {
+
+    private CompressionType defaultType = CompressionType.LZ4;
+
+    private Map<String, CompressionType> topics = new HashMap<>();
+
+    public CompressionType forTopic(String topic) {
+        return topics.getOrDefault(topic, defaultType);
+    }
+}
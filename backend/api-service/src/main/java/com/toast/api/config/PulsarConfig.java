@@ -1,21 +1,38 @@
 package com.toast.api.config;
 
+import org.apache.pulsar.client.admin.PulsarAdmin;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({PulsarCompressionProperties.class, PulsarConsumerProperties.class, PulsarTopicProperties.class})
 public class PulsarConfig {
 
     @Value("${pulsar.service-url:pulsar://localhost:6650}")
     private String pulsarServiceUrl;
 
+    @Value("${pulsar.admin-url:http://localhost:8080}")
+    private String pulsarAdminUrl;
+
+    @Bean(destroyMethod = "close")
+    public PulsarAdmin pulsarAdmin() throws PulsarClientException {
+        return PulsarAdmin.builder()
+                .serviceHttpUrl(pulsarAdminUrl)
+                .build();
+    }
+
     @Bean
-    public PulsarClient pulsarClient() throws PulsarClientException {
+    public PulsarClient pulsarClient(PulsarAdmin pulsarAdmin, PulsarTopicProperties topicProperties) throws PulsarClientException {
+        // Partitioned topics have to exist before the first producer or consumer connects. The admin calls run on
+        // their own thread, so an unreachable admin endpoint holds up startup for provision-timeout at most
+        new PulsarTopicProvisioner(pulsarAdmin, topicProperties).provision(topicProperties.getProvisionTimeout());
+
         return PulsarClient.builder()
                 .serviceUrl(pulsarServiceUrl)
                 .build();
     }
-} 
\ No newline at end of file
+}
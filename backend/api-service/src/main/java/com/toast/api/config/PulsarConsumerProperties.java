@@ -0,0 +1,138 @@
+package com.toast.api.config;
+
+import lombok.Data;
+import org.apache.pulsar.client.api.BatchReceivePolicy;
+import org.apache.pulsar.client.api.RedeliveryBackoff;
+import org.apache.pulsar.client.impl.MultiplierRedeliveryBackoff;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive and processing settings for managed consumers, per subscription name.
+ */
+@Data
+@ConfigurationProperties(prefix = "pulsar.consumers")
+public class PulsarConsumerProperties {
+
+    private Settings defaults = Settings.builtIn();
+
+    /** Per-subscription overrides; settings left unset fall back to defaults */
+    private Map<String, Settings> subscriptions = new HashMap<>();
+
+    public Settings forSubscription(String subscription) {
+        Settings overrides = subscriptions.get(subscription);
+        return overrides == null ? defaults : overrides.over(defaults);
+    }
+
+    /**
+     * Every setting is nullable so an unset one can be told apart from one set to its default value.
+     * Settings resolved by {@link #forSubscription} have all of them set except dedupWindow.
+     */
+    @Data
+    public static class Settings {
+
+        /** Messages of one batch handled in parallel; 1 handles them in order on the receive thread */
+        private Integer concurrency;
+
+        /** Handle messages with the same key in order; needs a Key_Shared, Exclusive or Failover subscription */
+        private Boolean keyOrdered;
+
+        /** A batch receive returns once this many messages or batchTimeout is reached */
+        private Integer batchMaxMessages;
+
+        private Duration batchTimeout;
+
+        private Integer receiverQueueSize;
+
+        /** How long drain waits for the in-flight batch before giving up */
+        private Duration drainTimeout;
+
+        /** Skip messages already handled within this window (by key and idempotency key or sequence id); unset or 0 disables it */
+        private Duration dedupWindow;
+
+        /** Fingerprints remembered by the dedup window; older ones are forgotten early once it is full */
+        private Integer dedupMaxEntries;
+
+        /** Redeliveries of a failing message before it goes to the dead-letter topic; 0 redelivers it forever */
+        private Integer maxRedeliveries;
+
+        /** Move failing messages to the retry-letter topic with the backoff delay instead of negatively acknowledging them */
+        private Boolean retryLetter;
+
+        /** Redelivery delay after the first failure, multiplied by backoffMultiplier per failure up to backoffMax */
+        private Duration backoffMin;
+
+        private Duration backoffMax;
+
+        private Double backoffMultiplier;
+
+        public static Settings builtIn() {
+            Settings settings = new Settings();
+            settings.concurrency = 1;
+            settings.keyOrdered = false;
+            settings.batchMaxMessages = 100;
+            settings.batchTimeout = Duration.ofMillis(100);
+            settings.receiverQueueSize = 1000;
+            settings.drainTimeout = Duration.ofSeconds(30);
+            settings.dedupMaxEntries = 100_000;
+            settings.maxRedeliveries = 0;
+            settings.retryLetter = false;
+            settings.backoffMin = Duration.ofSeconds(1);
+            settings.backoffMax = Duration.ofMinutes(1);
+            settings.backoffMultiplier = 2.0;
+            return settings;
+        }
+
+        /**
+         * These settings with the unset ones taken from base
+         */
+        public Settings over(Settings base) {
+            Settings merged = new Settings();
+            merged.concurrency = orElse(concurrency, base.concurrency);
+            merged.keyOrdered = orElse(keyOrdered, base.keyOrdered);
+            merged.batchMaxMessages = orElse(batchMaxMessages, base.batchMaxMessages);
+            merged.batchTimeout = orElse(batchTimeout, base.batchTimeout);
+            merged.receiverQueueSize = orElse(receiverQueueSize, base.receiverQueueSize);
+            merged.drainTimeout = orElse(drainTimeout, base.drainTimeout);
+            merged.dedupWindow = orElse(dedupWindow, base.dedupWindow);
+            merged.dedupMaxEntries = orElse(dedupMaxEntries, base.dedupMaxEntries);
+            merged.maxRedeliveries = orElse(maxRedeliveries, base.maxRedeliveries);
+            merged.retryLetter = orElse(retryLetter, base.retryLetter);
+            merged.backoffMin = orElse(backoffMin, base.backoffMin);
+            merged.backoffMax = orElse(backoffMax, base.backoffMax);
+            merged.backoffMultiplier = orElse(backoffMultiplier, base.backoffMultiplier);
+            return merged;
+        }
+
+        private static <T> T orElse(T value, T fallback) {
+            return value != null ? value : fallback;
+        }
+
+        public BatchReceivePolicy batchReceivePolicy() {
+            return BatchReceivePolicy.builder()
+                    .maxNumMessages(batchMaxMessages)
+                    .timeout((int) batchTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+        }
+
+        public RedeliveryBackoff redeliveryBackoff() {
+            return MultiplierRedeliveryBackoff.builder()
+                    .minDelayMs(backoffMin.toMillis())
+                    .maxDelayMs(backoffMax.toMillis())
+                    .multiplier(backoffMultiplier)
+                    .build();
+        }
+
+        /**
+         * Redelivery delay for a message that has already been redelivered {@code redeliveries} times
+         */
+        public long backoffMillis(int redeliveries) {
+            double delay = backoffMin.toMillis() * Math.pow(backoffMultiplier, redeliveries);
+            return (long) Math.min(delay, backoffMax.toMillis());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.toast.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partition count per topic. Topics listed here are created as partitioned topics on startup,
+ * or grown to the configured count; partitions can not be removed. Optionally enables broker-side
+ * deduplication on them. Only these topics, and any listed as publishable, can be published to by name.
+ */
+@Data
+@ConfigurationProperties(prefix = "pulsar.topics")
+public class PulsarTopicProperties {
+
+    private String namespace = "public/default";
+
+    private Map<String, Integer> partitions = new HashMap<>();
+
+    /** Further topics, besides the partitioned ones above, that clients may publish to by name */
+    private Set<String> publishable = new HashSet<>();
+
+    /** Enable broker-side deduplication by producer name and sequence id on the topics above */
+    private boolean deduplication = false;
+
+    /** How long startup waits for provisioning before it creates the Pulsar client anyway */
+    private Duration provisionTimeout = Duration.ofSeconds(15);
+
+    public boolean isPublishable(String topic) {
+        return partitions.containsKey(topic) || publishable.contains(topic);
+    }
+
+    public String fullName(String topic) {
+        return topic.contains("://") ? topic : "persistent://" + namespace + "/" + topic;
+    }
+}
@@ -0,0 +1,102 @@
+package com.toast.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.admin.PulsarAdminException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes sure the configured partitioned topics exist before any producer or consumer
+ * touches them; otherwise the broker would auto-create them as non-partitioned topics.
+ * Also enables broker-side deduplication on them when configured.
+ */
+@Slf4j
+class PulsarTopicProvisioner {
+
+    private final PulsarAdmin pulsarAdmin;
+    private final PulsarTopicProperties topicProperties;
+
+    PulsarTopicProvisioner(PulsarAdmin pulsarAdmin, PulsarTopicProperties topicProperties) {
+        this.pulsarAdmin = pulsarAdmin;
+        this.topicProperties = topicProperties;
+    }
+
+    /**
+     * Provision on a separate thread and wait at most timeout for it. After the timeout startup goes on while
+     * provisioning continues; a topic a producer or consumer reaches first is auto-created non-partitioned.
+     */
+    void provision(Duration timeout) {
+        CompletableFuture<Void> provisioning = CompletableFuture.runAsync(this::provision,
+                task -> Thread.ofPlatform().name("pulsar-topic-provisioner").daemon(true).start(task));
+        try {
+            provisioning.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Topic provisioning did not finish within {}, starting without it", timeout);
+        } catch (ExecutionException e) {
+            log.warn("Topic provisioning failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void provision() {
+        topicProperties.getPartitions().forEach((topic, partitions) -> {
+            try {
+                provision(topicProperties.fullName(topic), partitions);
+            } catch (PulsarAdminException e) {
+                // Startup goes on; producers and consumers still work against whatever topic exists
+                log.warn("Could not provision {} with {} partitions: {}", topic, partitions, e.getMessage());
+            }
+            if (topicProperties.isDeduplication()) {
+                enableDeduplication(topicProperties.fullName(topic));
+            }
+        });
+    }
+
+    /**
+     * Needs topic-level policies on the broker (topicLevelPoliciesEnabled, on by default)
+     */
+    private void enableDeduplication(String topic) {
+        try {
+            if (!Boolean.TRUE.equals(pulsarAdmin.topicPolicies().getDeduplicationStatus(topic))) {
+                pulsarAdmin.topicPolicies().setDeduplicationStatus(topic, true);
+                log.info("Enabled deduplication on {}", topic);
+            }
+        } catch (PulsarAdminException e) {
+            log.warn("Could not enable deduplication on {}: {}", topic, e.getMessage());
+        }
+    }
+
+    private void provision(String topic, int partitions) throws PulsarAdminException {
+        int current = pulsarAdmin.topics().getPartitionedTopicMetadata(topic).partitions;
+        if (current == partitions) {
+            return;
+        }
+        if (current == 0) {
+            if (pulsarAdmin.topics().getList(topicProperties.getNamespace()).contains(topic)) {
+                log.error("{} exists as a non-partitioned topic and can not be partitioned in place", topic);
+                return;
+            }
+            try {
+                pulsarAdmin.topics().createPartitionedTopic(topic, partitions);
+                log.info("Created {} with {} partitions", topic, partitions);
+            } catch (PulsarAdminException.ConflictException e) {
+                // Another instance created it first
+                log.debug("{} was created concurrently", topic);
+            }
+        } else if (current < partitions) {
+            // Keys hash over the new partition count from here on; events for a key published around the
+            // change may land on different partitions and be consumed out of order
+            pulsarAdmin.topics().updatePartitionedTopic(topic, partitions);
+            log.warn("Grew {} from {} to {} partitions", topic, current, partitions);
+        } else {
+            log.warn("{} has {} partitions, more than the configured {}; partitions can not be removed",
+                    topic, current, partitions);
+        }
+    }
+}
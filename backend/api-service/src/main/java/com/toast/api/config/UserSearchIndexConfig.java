@@ -0,0 +1,67 @@
+package com.toast.api.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the pg_trgm GIN indexes behind user search. JPA index annotations cannot
+ * express operator classes or expressions, so they are created here once the schema exists.
+ * A concurrent build that was interrupted leaves an invalid index behind, which IF NOT EXISTS
+ * would skip, so invalid ones are dropped and built again.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user-search.create-indexes", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchIndexConfig {
+
+    private static final String CREATE_EXTENSION = "CREATE EXTENSION IF NOT EXISTS pg_trgm";
+
+    private static final Map<String, String> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put("idx_users_username_trgm", "ON users USING gin (username gin_trgm_ops)");
+        INDEXES.put("idx_users_email_trgm", "ON users USING gin (email gin_trgm_ops)");
+        INDEXES.put("idx_users_full_name_trgm",
+                "ON users USING gin ((coalesce(first_name, '') || ' ' || coalesce(last_name, '')) gin_trgm_ops)");
+    }
+
+    private static final String INVALID_INDEXES =
+            "SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE NOT i.indisvalid AND c.relname = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchIndexes() {
+        String statement = CREATE_EXTENSION;
+        try {
+            jdbcTemplate.execute(statement);
+            List<String> invalid = jdbcTemplate.queryForList(INVALID_INDEXES, String.class,
+                    (Object) INDEXES.keySet().toArray(String[]::new));
+            for (String name : invalid) {
+                log.error("User search index {} is invalid after an interrupted build, rebuilding it", name);
+                statement = "DROP INDEX CONCURRENTLY IF EXISTS " + name;
+                jdbcTemplate.execute(statement);
+            }
+            for (Map.Entry<String, String> index : INDEXES.entrySet()) {
+                statement = "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index.getKey() + " " + index.getValue();
+                jdbcTemplate.execute(statement);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not create user search index, search will fall back to sequential scans: {}", statement, e);
+            return;
+        }
+        log.info("User search indexes are in place");
+    }
+}
@@ -0,0 +1,78 @@
+package com.toast.api.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier (blocking inside synchronized
+ * blocks or native frames, e.g. in a JDBC driver) for longer than the threshold.
+ * Each occurrence is counted and logged with the top of its stack.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Counter pinnedCounter;
+    private final Duration threshold;
+    private RecordingStream recordingStream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .register(meterRegistry);
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        recordingStream.startAsync();
+        log.info("Monitoring virtual thread pinning above {}", threshold);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        if (log.isWarnEnabled()) {
+            StringBuilder stack = new StringBuilder();
+            if (event.getStackTrace() != null) {
+                List<RecordedFrame> frames = event.getStackTrace().getFrames();
+                for (int i = 0; i < Math.min(LOGGED_FRAMES, frames.size()); i++) {
+                    RecordedFrame frame = frames.get(i);
+                    stack.append("\n\tat ")
+                            .append(frame.getMethod().getType().getName())
+                            .append('.')
+                            .append(frame.getMethod().getName())
+                            .append(':')
+                            .append(frame.getLineNumber());
+                }
+            }
+            log.warn("Virtual thread pinned for {} ms on {}{}",
+                    event.getDuration().toMillis(), event.getThread() == null ? "?" : event.getThread().getJavaName(), stack);
+        }
+    }
+}
@@ -1,20 +1,50 @@
 package com.toast.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.toast.api.service.AdvancedPulsarService;
+import com.toast.api.service.PulsarConsumerRuntime;
+import com.toast.api.service.PulsarDeadLetterService;
+import com.toast.api.service.PulsarPublishLimiter;
+import com.toast.api.service.PulsarReplayService;
+import com.toast.api.service.PulsarService;
 import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.ConsumerStatus;
+import com.toast.common.dto.PublishResult;
+import com.toast.common.dto.ReplayRequest;
+import com.toast.common.dto.ReplayStatus;
+import com.toast.common.dto.TopicStatsSnapshot;
+import com.toast.common.dto.UserEvent;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdminException;
 import org.apache.pulsar.client.api.Message;
-import org.apache.pulsar.client.api.MessageId;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/pulsar/advanced")
@@ -23,104 +53,126 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class AdvancedPulsarController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_REDRIVE_MESSAGES = 100_000;
+
     private final AdvancedPulsarService advancedPulsarService;
+    private final PulsarService pulsarService;
+    private final PulsarPublishLimiter publishLimiter;
+    private final PulsarConsumerRuntime consumerRuntime;
+    private final PulsarReplayService replayService;
+    private final PulsarDeadLetterService deadLetterService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/batch")
-    @Operation(summary = "Send batch messages", description = "Send multiple messages in batch to Pulsar")
-    public ResponseEntity<ApiResponse<String>> sendBatchMessages(@RequestBody String[] messages) {
-        try {
-            CompletableFuture<Void> future = advancedPulsarService.sendBatchMessages(messages);
-            future.get();
-            return ResponseEntity.ok(ApiResponse.success("Batch messages sent successfully", 
-                    "Sent " + messages.length + " messages"));
-        } catch (Exception e) {
-            log.error("Error sending batch messages", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send batch messages: " + e.getMessage()));
-        }
+    @Operation(summary = "Send batch messages", description = "Send multiple messages in batch to Pulsar and report the outcome of each")
+    public CompletableFuture<ResponseEntity<ApiResponse<List<PublishResult>>>> sendBatchMessages(@RequestBody String[] messages) {
+        // Every message takes its own publish limiter permit inside the batch pipeline
+        return advancedPulsarService.sendBatchMessages(messages)
+                .thenApply(results -> {
+                    long failed = results.stream().filter(result -> !result.isSuccess()).count();
+                    return ResponseEntity.ok(ApiResponse.<List<PublishResult>>builder()
+                            .success(failed == 0)
+                            .message("Sent " + (results.size() - failed) + " of " + results.size() + " messages")
+                            .data(results)
+                            .timestamp(LocalDateTime.now())
+                            .build());
+                })
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send batch messages", throwable));
+    }
+
+    @PostMapping(value = "/batch/stream", consumes = NDJSON, produces = NDJSON)
+    @Operation(summary = "Stream batch messages",
+            description = "Publish each NDJSON line as a message. Returns one NDJSON result line per message, in order, as acks arrive")
+    public ResponseEntity<StreamingResponseBody> streamBatchMessages(InputStream body) {
+        StreamingResponseBody response = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            Iterator<String> lines = reader.lines().filter(line -> !line.isBlank()).iterator();
+            advancedPulsarService.sendBatch(lines, result -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf(NDJSON))
+                .body(response);
     }
 
     @PostMapping("/with-properties")
     @Operation(summary = "Send message with properties", description = "Send a message with custom properties")
-    public ResponseEntity<ApiResponse<String>> sendMessageWithProperties(
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageWithProperties(
             @RequestBody String message,
             @RequestParam Map<String, String> properties) {
-        try {
-            CompletableFuture<MessageId> future = advancedPulsarService.sendMessageWithProperties(message, properties);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Message with properties sent successfully", 
-                    messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending message with properties", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send message: " + e.getMessage()));
-        }
+        return publishLimiter.submit(() -> advancedPulsarService.sendMessageWithProperties(message, properties))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message with properties sent successfully", 
+                        messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message", throwable));
     }
 
     @PostMapping("/with-delay")
     @Operation(summary = "Send message with delay", description = "Send a message that will be delivered after a delay")
-    public ResponseEntity<ApiResponse<String>> sendMessageWithDelay(
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageWithDelay(
             @RequestBody String message,
             @RequestParam long delaySeconds) {
-        try {
-            CompletableFuture<MessageId> future = advancedPulsarService.sendMessageWithDelay(message, delaySeconds);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Delayed message sent successfully", 
-                    messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending delayed message", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send delayed message: " + e.getMessage()));
-        }
+        return publishLimiter.submit(() -> advancedPulsarService.sendMessageWithDelay(message, delaySeconds))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Delayed message sent successfully", 
+                        messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send delayed message", throwable));
     }
 
     @PostMapping("/with-schema")
-    @Operation(summary = "Send message with schema", description = "Send a message with schema validation")
-    public ResponseEntity<ApiResponse<String>> sendMessageWithSchema(@RequestBody String message) {
-        try {
-            CompletableFuture<MessageId> future = advancedPulsarService.sendMessageWithSchema(message);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Message with schema sent successfully", 
-                    messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending message with schema", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send message with schema: " + e.getMessage()));
-        }
+    @Operation(summary = "Send message with schema", description = "Send a user event encoded with its registered Avro schema")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageWithSchema(@RequestBody UserEvent userEvent) {
+        return publishLimiter.submit(() -> pulsarService.sendUserEvent(userEvent, null))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message with schema sent successfully", 
+                        messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message with schema", throwable));
     }
 
     @PostMapping("/compressed")
     @Operation(summary = "Send compressed message", description = "Send a message with compression")
-    public ResponseEntity<ApiResponse<String>> sendCompressedMessage(@RequestBody String message) {
-        try {
-            CompletableFuture<MessageId> future = advancedPulsarService.sendCompressedMessage(message);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Compressed message sent successfully", 
-                    messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending compressed message", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send compressed message: " + e.getMessage()));
-        }
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendCompressedMessage(@RequestBody String message) {
+        return publishLimiter.submit(() -> advancedPulsarService.sendCompressedMessage(message))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Compressed message sent successfully", 
+                        messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send compressed message", throwable));
     }
 
     @GetMapping("/stats/{topicName}")
-    @Operation(summary = "Get topic stats", description = "Get statistics for a specific topic")
-    public ResponseEntity<ApiResponse<Object>> getTopicStats(@PathVariable String topicName) {
-        try {
-            CompletableFuture<Object> future = advancedPulsarService.getTopicStats(topicName);
-            Object stats = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Topic stats retrieved", stats));
-        } catch (Exception e) {
-            log.error("Error getting topic stats", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to get topic stats: " + e.getMessage()));
-        }
+    @Operation(summary = "Get topic stats", description = "Rates, storage and per-subscription backlog and lag from the latest background sample")
+    public CompletableFuture<ResponseEntity<ApiResponse<TopicStatsSnapshot>>> getTopicStats(@PathVariable String topicName) {
+        return advancedPulsarService.getTopicStats(topicName)
+                .thenApply(stats -> ResponseEntity.ok(ApiResponse.success("Topic stats retrieved", stats)))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().body(ApiResponse.error(cause.getMessage()));
+                    }
+                    if (cause instanceof PulsarAdminException.NotFoundException) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    log.error("Error getting topic stats", cause);
+                    return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                            .body(ApiResponse.error("Failed to get topic stats: " + cause.getMessage()));
+                });
     }
 
     @PostMapping("/start-consumer")
-    @Operation(summary = "Start consumer with handler", description = "Start consuming messages with custom handler")
+    @Operation(summary = "Start consumer with handler", description = "Start consuming batch-events with custom handler; does nothing if already running")
     public ResponseEntity<ApiResponse<String>> startConsumer() {
         try {
-            advancedPulsarService.consumeMessagesWithHandler(message -> {
+            boolean started = advancedPulsarService.consumeMessagesWithHandler(message -> {
                 log.info("Processing message: {}", new String(message.getData()));
                 // Add your custom processing logic here
             });
-            return ResponseEntity.ok(ApiResponse.success("Consumer started successfully", 
+            return ResponseEntity.ok(ApiResponse.success(started ? "Consumer started successfully" : "Consumer already running",
                     "Consumer is now listening for messages"));
         } catch (Exception e) {
             log.error("Error starting consumer", e);
@@ -128,74 +180,136 @@ public class AdvancedPulsarController {
         }
     }
 
+    @GetMapping("/consumers")
+    @Operation(summary = "List consumers", description = "State, totals and lag of every managed consumer")
+    public ResponseEntity<ApiResponse<List<ConsumerStatus>>> getConsumers() {
+        return ResponseEntity.ok(ApiResponse.success("Consumers retrieved", consumerRuntime.statuses()));
+    }
+
+    @PostMapping("/consumers/{name}/start")
+    @Operation(summary = "Start consumer", description = "Start a managed consumer's receive loop; does nothing if already running")
+    public ResponseEntity<ApiResponse<ConsumerStatus>> startManagedConsumer(@PathVariable String name) {
+        return consumerRuntime.find(name)
+                .map(consumer -> {
+                    boolean started = consumer.start();
+                    return ResponseEntity.ok(ApiResponse.success(started ? "Consumer started" : "Consumer already running",
+                            consumer.status()));
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/consumers/{name}/drain")
+    @Operation(summary = "Drain consumer", description = "Stop receiving, finish and acknowledge the in-flight batch, then stop")
+    public ResponseEntity<ApiResponse<ConsumerStatus>> drainConsumer(@PathVariable String name) {
+        return consumerRuntime.find(name)
+                .map(consumer -> consumer.drain()
+                        ? ResponseEntity.ok(ApiResponse.success("Consumer drained", consumer.status()))
+                        : ResponseEntity.status(HttpStatus.ACCEPTED)
+                                .body(ApiResponse.success("Consumer still draining", consumer.status())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/consumers/{name}/stop")
+    @Operation(summary = "Stop consumer", description = "Stop immediately; unacknowledged messages are redelivered")
+    public ResponseEntity<ApiResponse<ConsumerStatus>> stopConsumer(@PathVariable String name) {
+        return consumerRuntime.find(name)
+                .map(consumer -> {
+                    consumer.stop();
+                    return ResponseEntity.ok(ApiResponse.success("Consumer stopped", consumer.status()));
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/consumers/{name}/dead-letters/redrive")
+    @Operation(summary = "Re-drive dead letters", description = "Republish up to maxMessages dead-lettered messages of a managed consumer to its topic")
+    public CompletableFuture<ResponseEntity<ApiResponse<Integer>>> redriveDeadLetters(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "1000") int maxMessages) {
+        if (maxMessages < 1 || maxMessages > MAX_REDRIVE_MESSAGES) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("maxMessages must be between 1 and " + MAX_REDRIVE_MESSAGES)));
+        }
+        return deadLetterService.redrive(name, maxMessages)
+                .thenApply(moved -> ResponseEntity.ok(ApiResponse.success("Re-drove " + moved + " messages", moved)))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    if (cause instanceof NoSuchElementException) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().body(ApiResponse.error(cause.getMessage()));
+                    }
+                    if (cause instanceof IllegalStateException) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(cause.getMessage()));
+                    }
+                    log.error("Error re-driving dead letters of {}", name, cause);
+                    return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                            .body(ApiResponse.error("Failed to re-drive dead letters: " + cause.getMessage()));
+                });
+    }
+
     @PostMapping("/start-reader")
     @Operation(summary = "Start reader from position", description = "Start reading messages from a specific position")
-    public ResponseEntity<ApiResponse<String>> startReader() {
+    public ResponseEntity<ApiResponse<ReplayStatus>> startReader() {
         try {
-            advancedPulsarService.readMessagesFromPosition(message -> {
+            ReplayStatus status = advancedPulsarService.readMessagesFromPosition(message -> {
                 log.info("Reading message from position: {}", new String(message.getData()));
                 // Add your custom processing logic here
             });
-            return ResponseEntity.ok(ApiResponse.success("Reader started successfully", 
-                    "Reader is now reading messages from position"));
-        } catch (Exception e) {
-            log.error("Error starting reader", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to start reader: " + e.getMessage()));
+            return ResponseEntity.ok(ApiResponse.success("Reader started successfully", status));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
         }
     }
 
-    @PostMapping("/example-user-event")
-    @Operation(summary = "Send example user event", description = "Send a complete example user event with all features")
-    public ResponseEntity<ApiResponse<String>> sendExampleUserEvent(@RequestBody UserEventExample userEvent) {
+    @PostMapping("/replays/{id}")
+    @Operation(summary = "Start replay", description = "Replay a topic from a publish time or message id, optionally into a target topic. "
+            + "With resume=true, continue from the checkpoint of an earlier run with the same id")
+    public ResponseEntity<ApiResponse<ReplayStatus>> startReplay(@PathVariable String id,
+                                                                 @Valid @RequestBody ReplayRequest request) {
         try {
-            // Create properties for the message
-            Map<String, String> properties = new HashMap<>();
-            properties.put("eventType", userEvent.getEventType());
-            properties.put("userId", userEvent.getUserId());
-            properties.put("timestamp", userEvent.getTimestamp());
-            properties.put("source", "toast-api");
-
-            // Create the message
-            String message = String.format("User event: %s - User: %s - Action: %s - Data: %s", 
-                    userEvent.getEventType(), 
-                    userEvent.getUserId(), 
-                    userEvent.getAction(),
-                    userEvent.getData());
-
-            // Send with properties
-            CompletableFuture<MessageId> future = advancedPulsarService.sendMessageWithProperties(message, properties);
-            MessageId messageId = future.get();
-
-            return ResponseEntity.ok(ApiResponse.success("Example user event sent successfully", 
-                    messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending example user event", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send example user event: " + e.getMessage()));
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Replay started", replayService.start(id, request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
         }
     }
 
-    // Inner class for example user events
-    public static class UserEventExample {
-        private String eventType;
-        private String userId;
-        private String action;
-        private String data;
-        private String timestamp;
-
-        // Getters and setters
-        public String getEventType() { return eventType; }
-        public void setEventType(String eventType) { this.eventType = eventType; }
-        
-        public String getUserId() { return userId; }
-        public void setUserId(String userId) { this.userId = userId; }
-        
-        public String getAction() { return action; }
-        public void setAction(String action) { this.action = action; }
-        
-        public String getData() { return data; }
-        public void setData(String data) { this.data = data; }
-        
-        public String getTimestamp() { return timestamp; }
-        public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
-    }
-} 
\ No newline at end of file
+    @GetMapping("/replays")
+    @Operation(summary = "List replays", description = "Progress of replays started since this instance came up")
+    public ResponseEntity<ApiResponse<Collection<ReplayStatus>>> getReplays() {
+        return ResponseEntity.ok(ApiResponse.success("Replays retrieved", replayService.getStatuses()));
+    }
+
+    @GetMapping("/replays/{id}")
+    @Operation(summary = "Get replay", description = "Progress of one replay")
+    public ResponseEntity<ApiResponse<ReplayStatus>> getReplay(@PathVariable String id) {
+        return replayService.getStatus(id)
+                .map(status -> ResponseEntity.ok(ApiResponse.success("Replay retrieved", status)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/replays/{id}/cancel")
+    @Operation(summary = "Cancel replay", description = "Stop a replay after its current batches, keeping its checkpoint for a resume")
+    public ResponseEntity<ApiResponse<ReplayStatus>> cancelReplay(@PathVariable String id) {
+        return replayService.cancel(id)
+                .map(status -> ResponseEntity.ok(ApiResponse.success("Replay cancelling", status)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/example-user-event")
+    @Operation(summary = "Send example user event", description = "Send a complete example user event with all features")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendExampleUserEvent(@RequestBody UserEvent userEvent) {
+        // The event travels as a typed Avro value; properties only carry routing metadata
+        Map<String, String> properties = new HashMap<>();
+        properties.put("source", "toast-api");
+
+        return publishLimiter.submit(() -> pulsarService.sendUserEvent(userEvent, properties))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Example user event sent successfully", 
+                        messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send example user event", throwable));
+    }
+}
@@ -0,0 +1,65 @@
+package com.toast.api.controller;
+
+import com.toast.api.service.PublishRejectedException;
+import com.toast.common.dto.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Maps the outcome of an asynchronous publish onto an HTTP response.
+ */
+@Slf4j
+final class PublishResponses {
+
+    private PublishResponses() {
+    }
+
+    static <T> ResponseEntity<ApiResponse<T>> failed(String message, Throwable throwable) {
+        Throwable cause = unwrap(throwable);
+        HttpStatus status = statusFor(cause);
+        if (status.is5xxServerError() && status != HttpStatus.SERVICE_UNAVAILABLE) {
+            log.error(message, cause);
+        } else {
+            log.warn("{}: {}", message, cause.getMessage());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.body(ApiResponse.error(message + ": " + cause.getMessage()));
+    }
+
+    private static HttpStatus statusFor(Throwable cause) {
+        if (cause instanceof PublishRejectedException
+                || cause instanceof PulsarClientException.ProducerQueueIsFullError
+                || cause instanceof PulsarClientException.MemoryBufferIsFullError) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (cause instanceof TimeoutException || cause instanceof PulsarClientException.TimeoutException) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        }
+        if (cause instanceof PulsarClientException) {
+            return HttpStatus.BAD_GATEWAY;
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -1,12 +1,15 @@
 package com.toast.api.controller;
 
+import com.toast.api.config.PulsarTopicProperties;
+import com.toast.api.service.PulsarProducerPool;
+import com.toast.api.service.PulsarPublishLimiter;
 import com.toast.api.service.PulsarService;
 import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.UserEvent;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -22,45 +25,54 @@ import java.util.concurrent.CompletableFuture;
 public class PulsarController {
 
     private final PulsarService pulsarService;
+    private final PulsarPublishLimiter publishLimiter;
+    private final PulsarProducerPool producerPool;
+    private final PulsarTopicProperties topicProperties;
 
     @PostMapping("/send")
-    @Operation(summary = "Send message to Pulsar", description = "Send a message to the user-events topic")
-    public ResponseEntity<ApiResponse<String>> sendMessage(@RequestBody String message) {
-        try {
-            CompletableFuture<MessageId> future = pulsarService.sendMessage(message);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending message to Pulsar", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send message: " + e.getMessage()));
+    @Operation(summary = "Send message to Pulsar", description = "Send a message to the user-events topic. Retries with the same Idempotency-Key header are skipped by deduplicating consumers")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessage(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody String message) {
+        return publishLimiter.submit(() -> pulsarService.sendMessage(message, idempotencyKey))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message", throwable));
+    }
+
+    @PostMapping("/topics/{topic}/send")
+    @Operation(summary = "Send message to a configured topic", description = "Send a message, optionally keyed, to the given topic through a pooled producer. "
+            + "The topic must be configured under pulsar.topics")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageToTopic(
+            @PathVariable String topic,
+            @RequestParam(required = false) String key,
+            @RequestBody String message) {
+        // Every new topic name would create a topic on the broker and hold a pooled producer open
+        if (!topicProperties.isPublishable(topic)) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(ApiResponse.error("Topic is not configured for publishing: " + topic)));
         }
+        return publishLimiter.submit(() -> producerPool.send(topic, key, message, null))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message", throwable));
     }
 
     @PostMapping("/send-sync")
-    @Operation(summary = "Send message synchronously", description = "Send a message synchronously to the user-events topic")
-    public ResponseEntity<ApiResponse<String>> sendMessageSync(@RequestBody String message) {
-        try {
-            MessageId messageId = pulsarService.sendMessageSync(message);
-            return ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString()));
-        } catch (PulsarClientException e) {
-            log.error("Error sending message to Pulsar", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send message: " + e.getMessage()));
-        }
+    @Operation(summary = "Send message synchronously", description = "Send a message to the user-events topic and respond once the broker has acknowledged it, like /send")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageSync(@RequestBody String message) {
+        // Responds after the ack as before, without holding the request thread in a blocking send
+        return publishLimiter.submit(() -> pulsarService.sendMessage(message, null))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message", throwable));
     }
 
     @PostMapping("/send-with-key")
     @Operation(summary = "Send message with key", description = "Send a message with a specific key to the user-events topic")
-    public ResponseEntity<ApiResponse<String>> sendMessageWithKey(
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendMessageWithKey(
             @RequestParam String key,
             @RequestBody String message) {
-        try {
-            CompletableFuture<MessageId> future = pulsarService.sendMessageWithKey(key, message);
-            MessageId messageId = future.get();
-            return ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending message with key to Pulsar", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send message: " + e.getMessage()));
-        }
+        return publishLimiter.submit(() -> pulsarService.sendMessageWithKey(key, message))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("Message sent successfully", messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send message", throwable));
     }
 
     @GetMapping("/stats/producer")
@@ -88,41 +100,10 @@ public class PulsarController {
     }
 
     @PostMapping("/send-user-event")
-    @Operation(summary = "Send user event", description = "Send a user event message to Pulsar")
-    public ResponseEntity<ApiResponse<String>> sendUserEvent(@RequestBody UserEvent userEvent) {
-        try {
-            String message = String.format("User event: %s - User: %s - Action: %s", 
-                    userEvent.getEventType(), userEvent.getUserId(), userEvent.getAction());
-            
-            CompletableFuture<MessageId> future = pulsarService.sendMessageWithKey(
-                    userEvent.getUserId(), message);
-            MessageId messageId = future.get();
-            
-            return ResponseEntity.ok(ApiResponse.success("User event sent successfully", messageId.toString()));
-        } catch (Exception e) {
-            log.error("Error sending user event to Pulsar", e);
-            return ResponseEntity.ok(ApiResponse.error("Failed to send user event: " + e.getMessage()));
-        }
-    }
-
-    // Inner class for user events
-    public static class UserEvent {
-        private String eventType;
-        private String userId;
-        private String action;
-        private String timestamp;
-
-        // Getters and setters
-        public String getEventType() { return eventType; }
-        public void setEventType(String eventType) { this.eventType = eventType; }
-        
-        public String getUserId() { return userId; }
-        public void setUserId(String userId) { this.userId = userId; }
-        
-        public String getAction() { return action; }
-        public void setAction(String action) { this.action = action; }
-        
-        public String getTimestamp() { return timestamp; }
-        public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    @Operation(summary = "Send user event", description = "Send a user event with the Avro user event schema to the user-activity topic")
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> sendUserEvent(@RequestBody UserEvent userEvent) {
+        return publishLimiter.submit(() -> pulsarService.sendUserEvent(userEvent, null))
+                .thenApply(messageId -> ResponseEntity.ok(ApiResponse.success("User event sent successfully", messageId.toString())))
+                .exceptionally(throwable -> PublishResponses.failed("Failed to send user event", throwable));
     }
-} 
\ No newline at end of file
+}
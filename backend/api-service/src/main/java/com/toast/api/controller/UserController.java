@@ -1,17 +1,38 @@
 package com.toast.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.service.UserDataFormat;
+import com.toast.api.service.UserExportService;
+import com.toast.api.service.UserImportService;
 import com.toast.api.service.UserService;
 import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.CursorPage;
+import com.toast.common.dto.UserPatch;
+import com.toast.common.dto.UserSelection;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.dto.UserVersion;
 import com.toast.common.entity.User;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
 import jakarta.validation.Valid;
-import java.util.List;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -19,24 +40,90 @@ import java.util.List;
 @Tag(name = "User Management", description = "APIs for managing users")
 public class UserController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final UserExportService userExportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    @Operation(summary = "Get all users", description = "Retrieve a list of all users")
-    public ResponseEntity<ApiResponse<List<User>>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    @Operation(summary = "Get users", description = "Retrieve a page of users, newest first. Pass the returned nextCursor to fetch the following page")
+    public ResponseEntity<ApiResponse<CursorPage<UserSummary>>> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) User.UserRole role,
+            @RequestParam(required = false) Boolean isActive,
+            WebRequest request) {
+        ApiResponse<CursorPage<UserSummary>> response = userService.getUsers(cursor, size, role, isActive);
+        if (!response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+
+        String eTag = pageETag(response.getData());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(response);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search users",
+            description = "Ranked substring search over username, email and name (at least 3 characters). Pass nextCursor for more results")
+    public ResponseEntity<ApiResponse<CursorPage<UserSummary>>> searchUsers(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(userService.searchUsers(query, cursor, size));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export users",
+            description = "Stream all users in id order as NDJSON or CSV. Pass afterId to resume from the last id received")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "NDJSON") UserDataFormat format,
+            @RequestParam(required = false) Long afterId) {
+        StreamingResponseBody response = outputStream -> userExportService.exportUsers(afterId, format, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf(format == UserDataFormat.CSV ? CSV : NDJSON))
+                .body(response);
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get user by ID", description = "Retrieve a user by their ID")
-    public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id) {
-        return ResponseEntity.ok(userService.getUserById(id));
+    public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id, WebRequest request) {
+        // Revalidation only needs the version column, not the row; the version also tells whether the
+        // cached user is current, so the body and its ETag never lag behind a committed change
+        ApiResponse<Long> version = userService.getUserVersion(id);
+        if (!version.isSuccess()) {
+            return ResponseEntity.ok(ApiResponse.error(version.getMessage()));
+        }
+        if (request.checkNotModified(userETag(id, version.getData()))) {
+            return null;
+        }
+        return withUserETag(userService.getUserById(id, version.getData()), request);
+    }
+
+    @GetMapping("/{id}/summary")
+    @Operation(summary = "Get user summary by ID", description = "Retrieve the listing fields of a user without loading the full entity")
+    public ResponseEntity<ApiResponse<UserSummary>> getUserSummary(@PathVariable Long id) {
+        return ResponseEntity.ok(userService.getUserSummary(id));
     }
 
     @GetMapping("/username/{username}")
     @Operation(summary = "Get user by username", description = "Retrieve a user by their username")
-    public ResponseEntity<ApiResponse<User>> getUserByUsername(@PathVariable String username) {
-        return ResponseEntity.ok(userService.getUserByUsername(username));
+    public ResponseEntity<ApiResponse<User>> getUserByUsername(@PathVariable String username, WebRequest request) {
+        // Resolved to the id and version first, then served through the same version-checked cache as by id
+        ApiResponse<UserVersion> version = userService.getUserVersionByUsername(username);
+        if (!version.isSuccess()) {
+            return ResponseEntity.ok(ApiResponse.error(version.getMessage()));
+        }
+        UserVersion current = version.getData();
+        if (request.checkNotModified(userETag(current.id(), current.version()))) {
+            return null;
+        }
+        return withUserETag(userService.getUserById(current.id(), current.version()), request);
     }
 
     @PostMapping
@@ -45,15 +132,110 @@ public class UserController {
         return ResponseEntity.ok(userService.createUser(user));
     }
 
+    @PostMapping(value = "/import", consumes = {NDJSON, CSV}, produces = NDJSON)
+    @Operation(summary = "Bulk import users",
+            description = "Stream users as NDJSON or CSV (with a header row). Returns one NDJSON result line per input row")
+    public ResponseEntity<StreamingResponseBody> importUsers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+        UserDataFormat format = MediaType.valueOf(CSV).includes(contentType)
+                ? UserDataFormat.CSV
+                : UserDataFormat.NDJSON;
+
+        StreamingResponseBody response = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            userImportService.importUsers(body, format, result -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf(NDJSON))
+                .body(response);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update user", description = "Update an existing user")
     public ResponseEntity<ApiResponse<User>> updateUser(@PathVariable Long id, @Valid @RequestBody User user) {
         return ResponseEntity.ok(userService.updateUser(id, user));
     }
 
+    @PatchMapping("/{id}")
+    @Operation(summary = "Patch user",
+            description = "Update only the supplied fields in one statement. Returns 409 if version does not match the stored user")
+    public ResponseEntity<ApiResponse<Long>> patchUser(@PathVariable Long id, @Valid @RequestBody UserPatch patch) {
+        try {
+            return ResponseEntity.ok(userService.patchUser(id, patch));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("User was modified by someone else, reload and retry"));
+        }
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete user", description = "Delete a user by their ID")
     public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
         return ResponseEntity.ok(userService.deleteUser(id));
     }
-} 
\ No newline at end of file
+
+    @PostMapping("/bulk/activate")
+    @Operation(summary = "Bulk activate users", description = "Activate the users matching an id list or role/isActive filter in one statement")
+    public ResponseEntity<ApiResponse<Integer>> activateUsers(@RequestBody UserSelection selection) {
+        return ResponseEntity.ok(userService.setUsersActive(selection, true));
+    }
+
+    @PostMapping("/bulk/deactivate")
+    @Operation(summary = "Bulk deactivate users", description = "Deactivate the users matching an id list or role/isActive filter in one statement")
+    public ResponseEntity<ApiResponse<Integer>> deactivateUsers(@RequestBody UserSelection selection) {
+        return ResponseEntity.ok(userService.setUsersActive(selection, false));
+    }
+
+    @PostMapping("/bulk/role")
+    @Operation(summary = "Bulk change user role", description = "Set the role of the users matching an id list or role/isActive filter in one statement")
+    public ResponseEntity<ApiResponse<Integer>> changeUsersRole(
+            @RequestParam User.UserRole role,
+            @RequestBody UserSelection selection) {
+        return ResponseEntity.ok(userService.changeUsersRole(selection, role));
+    }
+
+    @PostMapping("/bulk/delete")
+    @Operation(summary = "Bulk delete users", description = "Delete the users matching an id list or role/isActive filter in one statement")
+    public ResponseEntity<ApiResponse<Integer>> deleteUsers(@RequestBody UserSelection selection) {
+        return ResponseEntity.ok(userService.deleteUsers(selection));
+    }
+
+    private ResponseEntity<ApiResponse<User>> withUserETag(ApiResponse<User> response, WebRequest request) {
+        if (!response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+
+        User user = response.getData();
+        String eTag = userETag(user.getId(), user.getVersion());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(response);
+    }
+
+    private static String userETag(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Tag a page by the id and version of every row on it plus its continuation,
+     * so any edit, insert or delete that changes what the page shows changes the tag.
+     */
+    private static String pageETag(CursorPage<UserSummary> page) {
+        StringBuilder key = new StringBuilder(page.getItems().size() * 16);
+        for (UserSummary user : page.getItems()) {
+            key.append(user.id()).append(':').append(user.version()).append(',');
+        }
+        key.append(page.getNextCursor());
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
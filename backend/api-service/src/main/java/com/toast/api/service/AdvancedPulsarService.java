@@ -1,13 +1,29 @@
 package com.toast.api.service;
 
+import com.toast.api.config.PulsarCompressionProperties;
+import com.toast.common.dto.PublishResult;
+import com.toast.common.dto.ReplayRequest;
+import com.toast.common.dto.ReplayStatus;
+import com.toast.common.dto.TopicStatsSnapshot;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.client.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -18,71 +34,133 @@ public class AdvancedPulsarService {
     @Autowired
     private PulsarClient pulsarClient;
 
+    @Autowired
+    private ExecutorService pulsarTaskExecutor;
+
+    @Autowired
+    private PulsarCompressionProperties compressionProperties;
+
+    @Autowired
+    private PulsarConsumerRuntime consumerRuntime;
+
+    @Autowired
+    private PulsarClientMetrics clientMetrics;
+
+    @Autowired
+    private PulsarReplayService replayService;
+
+    @Autowired
+    private PulsarTopicStatsSampler topicStatsSampler;
+
+    @Autowired
+    private PulsarPublishLimiter publishLimiter;
+
+    // Unique per instance and stable across restarts, so the broker can deduplicate by producer name and sequence id
+    @Value("${pulsar.instance-id:${HOSTNAME:local}}")
+    private String instanceId;
+
+    @Value("${pulsar.batch.max-pending:1000}")
+    private int batchMaxPending;
+
     private Producer<byte[]> batchProducer;
-    private Consumer<byte[]> batchConsumer;
-    private Reader<byte[]> reader;
+    private ManagedPulsarConsumer<byte[]> batchConsumer;
+    private volatile Consumer<Message<byte[]>> batchMessageHandler = msg -> { };
 
     @PostConstruct
     public void init() throws PulsarClientException {
         // Initialize batch producer
         batchProducer = pulsarClient.newProducer()
                 .topic("batch-events")
-                .producerName("toast-batch-producer")
+                .producerName("toast-batch-producer-" + instanceId)
                 .enableBatching(true)
-                .batchingMaxPublishDelay(10)
+                .batchingMaxPublishDelay(10, TimeUnit.MILLISECONDS)
                 .batchingMaxMessages(1000)
+                .compressionType(compressionProperties.forTopic("batch-events"))
+                // Keyed messages stay on murmur3(key) % partitions; unkeyed ones are spread round-robin
+                .hashingScheme(HashingScheme.Murmur3_32Hash)
+                .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
+                .intercept(clientMetrics.producerInterceptor())
                 .create();
+        clientMetrics.registerPendingQueue(batchProducer);
 
         // Initialize batch consumer with shared subscription
-        batchConsumer = pulsarClient.newConsumer()
-                .topic("batch-events")
-                .subscriptionName("toast-batch-subscription")
-                .subscriptionType(SubscriptionType.Shared)
-                .ackTimeout(30, TimeUnit.SECONDS)
-                .subscribe();
-
-        // Initialize reader for reading from specific position
-        reader = pulsarClient.newReader()
-                .topic("batch-events")
-                .startMessageId(MessageId.earliest)
-                .create();
+        batchConsumer = consumerRuntime.subscribe(pulsarClient.newConsumer()
+                        .ackTimeout(30, TimeUnit.SECONDS),
+                "batch-events", "toast-batch-subscription", SubscriptionType.Shared, this::onBatchMessage);
     }
 
     @PreDestroy
-    public void cleanup() throws PulsarClientException {
+    public void cleanup() throws IOException {
         if (batchProducer != null) {
             batchProducer.close();
         }
         if (batchConsumer != null) {
             batchConsumer.close();
         }
-        if (reader != null) {
-            reader.close();
-        }
     }
 
     /**
-     * Send batch of messages
+     * Send batch of messages and collect the outcome of each one
      */
-    public CompletableFuture<Void> sendBatchMessages(String[] messages) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        
-        try {
-            for (String message : messages) {
-                batchProducer.sendAsync(message.getBytes())
-                        .thenAccept(messageId -> 
-                            log.info("Sent batch message: {} with ID: {}", message, messageId))
-                        .exceptionally(throwable -> {
-                            log.error("Error sending batch message: {}", message, throwable);
-                            return null;
-                        });
+    public CompletableFuture<List<PublishResult>> sendBatchMessages(String[] messages) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<PublishResult> results = new ArrayList<>(messages.length);
+            sendBatch(Arrays.asList(messages).iterator(), results::add);
+            return results;
+        }, pulsarTaskExecutor);
+    }
+
+    /**
+     * Pipeline sends with at most batchMaxPending messages awaiting an ack. Every message takes its own
+     * publish limiter permit and timeout; when other publishes hold the remaining permits, the batch waits
+     * for its oldest send to free one, and a message is only rejected if the batch has nothing in flight.
+     * Blocks until every message is acked or failed; results reach the sink in input order.
+     * Returns the number of messages that failed.
+     */
+    public long sendBatch(Iterator<String> messages, Consumer<PublishResult> sink) {
+        Deque<CompletableFuture<PublishResult>> pending = new ArrayDeque<>(batchMaxPending);
+        long index = 0;
+        long failed = 0;
+
+        while (messages.hasNext()) {
+            long position = index++;
+            byte[] payload = messages.next().getBytes(StandardCharsets.UTF_8);
+            CompletableFuture<MessageId> send = publishLimiter.submit(() -> batchProducer.sendAsync(payload));
+            while (PulsarPublishLimiter.isRejected(send) && !pending.isEmpty()) {
+                failed += emit(pending.removeFirst(), sink);
+                send = publishLimiter.submit(() -> batchProducer.sendAsync(payload));
             }
-            future.complete(null);
-        } catch (Exception e) {
-            future.completeExceptionally(e);
+            pending.addLast(send.thenApply(messageId -> PublishResult.sent(position, messageId.toString()))
+                    .exceptionally(throwable -> PublishResult.failed(position, rootMessage(throwable))));
+
+            // Hand back whatever has already been acked, and wait for the oldest send once the window is full
+            while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() >= batchMaxPending)) {
+                failed += emit(pending.removeFirst(), sink);
+            }
+        }
+        while (!pending.isEmpty()) {
+            failed += emit(pending.removeFirst(), sink);
         }
-        
-        return future;
+
+        log.info("Sent batch of {} messages to batch-events, {} failed", index, failed);
+        return failed;
+    }
+
+    /**
+     * Wait for a send and pass its result on. Returns 1 if it failed, otherwise 0.
+     */
+    private static int emit(CompletableFuture<PublishResult> send, Consumer<PublishResult> sink) {
+        PublishResult result = send.join();
+        sink.accept(result);
+        return result.isSuccess() ? 0 : 1;
+    }
+
+    private static String rootMessage(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
     }
 
     /**
@@ -95,6 +173,12 @@ public class AdvancedPulsarService {
             
             // Add properties
             properties.forEach(messageBuilder::property);
+
+            // Keep each user's messages on one partition, in order
+            String userId = properties.get("userId");
+            if (userId != null) {
+                messageBuilder.key(userId);
+            }
             
             return messageBuilder.sendAsync();
         } catch (Exception e) {
@@ -123,96 +207,47 @@ public class AdvancedPulsarService {
     }
 
     /**
-     * Consume messages with custom handler
+     * Consume messages with custom handler. The batch consumer runs a single loop, so calling this
+     * while it is running only replaces the handler. Returns true if the consumer was started.
      */
-    public void consumeMessagesWithHandler(Consumer<Message<byte[]>> messageHandler) {
-        CompletableFuture.runAsync(() -> {
-            while (true) {
-                try {
-                    Message<byte[]> msg = batchConsumer.receive(1, TimeUnit.SECONDS);
-                    if (msg != null) {
-                        log.info("Received batch message: {} (MessageId: {})", 
-                                new String(msg.getData()), msg.getMessageId());
-                        
-                        // Process message with custom handler
-                        messageHandler.accept(msg);
-                        
-                        // Acknowledge the message
-                        batchConsumer.acknowledge(msg);
-                    }
-                } catch (PulsarClientException e) {
-                    log.error("Error receiving batch message", e);
-                } catch (Exception e) {
-                    log.error("Unexpected error in batch consumer", e);
-                }
-            }
-        });
+    public boolean consumeMessagesWithHandler(Consumer<Message<byte[]>> messageHandler) {
+        batchMessageHandler = messageHandler;
+        return batchConsumer.start();
     }
 
-    /**
-     * Read messages from specific position
-     */
-    public void readMessagesFromPosition(Consumer<Message<byte[]>> messageHandler) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                while (reader.hasMessageAvailable()) {
-                    Message<byte[]> msg = reader.readNext();
-                    if (msg != null) {
-                        log.info("Read message from position: {} (MessageId: {})", 
-                                new String(msg.getData()), msg.getMessageId());
-                        messageHandler.accept(msg);
-                    }
-                }
-            } catch (PulsarClientException e) {
-                log.error("Error reading messages from position", e);
-            }
-        });
+    private void onBatchMessage(Message<byte[]> msg) {
+        log.debug("Received batch message: {} (MessageId: {})", new String(msg.getData()), msg.getMessageId());
+        batchMessageHandler.accept(msg);
     }
 
     /**
-     * Get topic stats
+     * Read batch-events from the earliest position through the replay engine
      */
-    public CompletableFuture<Object> getTopicStats(String topicName) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // This would require PulsarAdmin client for full stats
-                // For now, return basic info
-                return "Topic: " + topicName + " - Producer: " + batchProducer.getProducerName();
-            } catch (Exception e) {
-                log.error("Error getting topic stats", e);
-                return "Error getting stats: " + e.getMessage();
-            }
+    public ReplayStatus readMessagesFromPosition(Consumer<Message<byte[]>> messageHandler) {
+        ReplayRequest request = new ReplayRequest();
+        request.setTopic("batch-events");
+        return replayService.start("batch-events-reader", request, msg -> {
+            log.debug("Read message from position: {} (MessageId: {})", new String(msg.getData()), msg.getMessageId());
+            messageHandler.accept(msg);
+            return CompletableFuture.completedFuture(null);
         });
     }
 
     /**
-     * Send message with schema validation
+     * Get topic stats from the latest background sample
      */
-    public CompletableFuture<MessageId> sendMessageWithSchema(String message) {
-        try {
-            // Create a simple JSON schema
-            String jsonSchema = "{\"type\":\"string\"}";
-            
-            return batchProducer.newMessage()
-                    .value(message.getBytes())
-                    .property("schema", jsonSchema)
-                    .sendAsync();
-        } catch (Exception e) {
-            log.error("Error sending message with schema", e);
-            CompletableFuture<MessageId> future = new CompletableFuture<>();
-            future.completeExceptionally(e);
-            return future;
-        }
+    public CompletableFuture<TopicStatsSnapshot> getTopicStats(String topicName) {
+        return topicStatsSampler.getStats(topicName);
     }
 
     /**
-     * Send message with compression
+     * Send message with compression. The batch producer compresses every batch it sends
+     * with the codec configured for batch-events, so this is an ordinary send on it.
      */
     public CompletableFuture<MessageId> sendCompressedMessage(String message) {
         try {
             return batchProducer.newMessage()
                     .value(message.getBytes())
-                    .property("compression", "lz4")
                     .sendAsync();
         } catch (Exception e) {
             log.error("Error sending compressed message", e);
@@ -221,4 +256,4 @@ public class AdvancedPulsarService {
             return future;
         }
     }
-} 
\ No newline at end of file
+}
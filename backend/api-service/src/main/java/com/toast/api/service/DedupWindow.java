@@ -0,0 +1,155 @@
+package com.toast.api.service;
+
+import org.apache.pulsar.client.api.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Remembers 64-bit message fingerprints for a sliding time window. The window is split into buckets,
+ * each an open-addressing table of primitive longs (11 to 22 bytes per entry); when the newest bucket's
+ * time is up or it is full, the oldest bucket is cleared and reused. Memory is fixed at construction,
+ * and an entry is remembered for at least one bucket length and at most the whole window.
+ * <p>
+ * Distinct messages collide with probability about n²/2⁶⁵ for n remembered fingerprints.
+ */
+final class DedupWindow {
+
+    /** Message property that identifies a logical message across client retries */
+    static final String IDEMPOTENCY_KEY_PROPERTY = "idempotencyKey";
+
+    private static final int BUCKETS = 6;
+
+    private final long bucketMillis;
+    private final int bucketCapacity;
+    private final long[][] buckets;
+    private final int[] sizes;
+    private int current;
+    private long currentStartedAt;
+
+    DedupWindow(Duration window, int maxEntries) {
+        this.bucketMillis = Math.max(1, window.toMillis() / BUCKETS);
+        this.bucketCapacity = Math.max(1, maxEntries / BUCKETS);
+        // A full bucket fills at most three quarters of its table, which keeps probe sequences short
+        int tableSize = Integer.highestOneBit(bucketCapacity * 4 / 3) << 1;
+        this.buckets = new long[BUCKETS][tableSize];
+        this.sizes = new int[BUCKETS];
+        this.currentStartedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Fingerprint of the message key and the client's idempotency key if it set one, otherwise of the
+     * key, topic, producer name and sequence id, which stay the same across redeliveries. The topic is
+     * the partition's own, since each partition producer of a partitioned topic shares the producer name
+     * and counts its sequence ids separately.
+     */
+    static long fingerprint(Message<?> msg) {
+        long hash = hash(msg.hasKey() ? msg.getKey() : "", 0xcbf29ce484222325L);
+        String idempotencyKey = msg.getProperty(IDEMPOTENCY_KEY_PROPERTY);
+        if (idempotencyKey != null) {
+            return mix(hash(idempotencyKey, hash));
+        }
+        String topic = msg.getTopicName();
+        String producerName = msg.getProducerName();
+        hash = hash(topic != null ? topic : "", hash);
+        return mix(hash(producerName != null ? producerName : "", hash) ^ mix(msg.getSequenceId()));
+    }
+
+    synchronized boolean contains(long fingerprint) {
+        advance(System.currentTimeMillis());
+        long entry = entry(fingerprint);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (sizes[i] > 0 && indexOf(buckets[i], entry) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void add(long fingerprint) {
+        long now = System.currentTimeMillis();
+        advance(now);
+        if (sizes[current] >= bucketCapacity) {
+            rotate(now);
+        }
+        long entry = entry(fingerprint);
+        long[] table = buckets[current];
+        int mask = table.length - 1;
+        for (int slot = (int) entry & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == entry) {
+                return;
+            }
+            if (table[slot] == 0) {
+                table[slot] = entry;
+                sizes[current]++;
+                return;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return Arrays.stream(sizes).sum();
+    }
+
+    private void advance(long now) {
+        long elapsed = now - currentStartedAt;
+        if (elapsed < bucketMillis) {
+            return;
+        }
+        long steps = Math.min(BUCKETS, elapsed / bucketMillis);
+        for (long i = 0; i < steps; i++) {
+            rotate(now);
+        }
+    }
+
+    private void rotate(long now) {
+        current = (current + 1) % BUCKETS;
+        if (sizes[current] > 0) {
+            Arrays.fill(buckets[current], 0L);
+            sizes[current] = 0;
+        }
+        currentStartedAt = now;
+    }
+
+    private static int indexOf(long[] table, long entry) {
+        int mask = table.length - 1;
+        for (int slot = (int) entry & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == entry) {
+                return slot;
+            }
+            if (table[slot] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 0 marks an empty slot, so it is stored as 1
+     */
+    private static long entry(long fingerprint) {
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes
+     */
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
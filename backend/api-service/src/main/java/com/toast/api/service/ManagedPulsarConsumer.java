@@ -0,0 +1,508 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarConsumerProperties;
+import com.toast.common.dto.ConsumerStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Messages;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.util.RetryMessageUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs one receive loop for a consumer: receives messages in batches, hands them to the
+ * handler on up to {@code concurrency} workers, and acknowledges each batch once it is handled.
+ * With {@code keyOrdered}, messages sharing a key are handled one after another in arrival order, and a key
+ * whose message failed is parked: its later messages are held unacknowledged, across batches, until the
+ * failed one has been redelivered and handled or dead-lettered, and are then handled right after it.
+ * Exclusive and Failover subscriptions ack cumulatively; Shared and Key_Shared ack the batch as a list.
+ * Messages whose handler throws are negatively acknowledged and redelivered with backoff, and cumulative
+ * acks are suspended until they have been handled; with {@code retryLetter} they are moved to the
+ * retry-letter topic instead and the batch is acknowledged. Messages that keep failing go to the
+ * dead-letter topic once {@code maxRedeliveries} is exhausted. With a {@code dedupWindow}, messages already handled
+ * within the window (redeliveries, or client retries carrying the same idempotency key) are acked
+ * without calling the handler.
+ * <p>
+ * Created through {@link PulsarConsumerRuntime}. {@link #start()} is idempotent, so a consumer
+ * never runs more than one loop.
+ */
+@Slf4j
+public class ManagedPulsarConsumer<T> {
+
+    public enum State { STOPPED, RUNNING, DRAINING }
+
+    private final String name;
+    private final String topic;
+    private final String deadLetterTopic;
+    private final Consumer<T> consumer;
+    private final java.util.function.Consumer<Message<T>> handler;
+    private final boolean cumulativeAck;
+    private final PulsarConsumerProperties.Settings settings;
+    private final ExecutorService executor;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.STOPPED);
+    private volatile CompletableFuture<Void> loop = CompletableFuture.completedFuture(null);
+    private volatile Thread loopThread;
+
+    // Negatively acknowledged or held and not yet handled; a cumulative ack would skip past them
+    private final Set<MessageId> awaitingRedelivery = new HashSet<>();
+    // Keys whose failed message is awaiting redelivery, by key; lanes for different keys update it in parallel
+    private final Map<String, ParkedKey<T>> parkedKeys = new ConcurrentHashMap<>();
+
+    private final AtomicLong lagMillis = new AtomicLong();
+    // Totals for status(), exported as pulsar.consumer.messages
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Counter duplicateCounter;
+    private final Counter retryCounter;
+    private final Counter deadLetterCounter;
+    private final DedupWindow dedupWindow;
+    private final Timer handlerTimer;
+    private final Timer ackTimer;
+    private final DistributionSummary batchSizes;
+
+    ManagedPulsarConsumer(String name,
+                          String topic,
+                          String deadLetterTopic,
+                          Consumer<T> consumer,
+                          SubscriptionType subscriptionType,
+                          java.util.function.Consumer<Message<T>> handler,
+                          PulsarConsumerProperties.Settings settings,
+                          ExecutorService executor,
+                          MeterRegistry meterRegistry,
+                          PulsarClientMetrics clientMetrics) {
+        this.name = name;
+        this.topic = topic;
+        this.deadLetterTopic = deadLetterTopic;
+        this.consumer = consumer;
+        this.handler = handler;
+        this.cumulativeAck = subscriptionType == SubscriptionType.Exclusive || subscriptionType == SubscriptionType.Failover;
+        this.settings = settings;
+        this.executor = executor;
+
+        Tags tags = Tags.of("topic", PulsarClientMetrics.topicTag(topic), "subscription", name);
+
+        FunctionCounter.builder("pulsar.consumer.messages", acked, AtomicLong::get)
+                .description("Messages handled by managed consumers")
+                .tags(tags.and("outcome", "acked"))
+                .register(meterRegistry);
+        FunctionCounter.builder("pulsar.consumer.messages", failed, AtomicLong::get)
+                .description("Messages handled by managed consumers")
+                .tags(tags.and("outcome", "failed"))
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("pulsar.consumer.duplicates")
+                .description("Messages skipped because they were already handled within the dedup window")
+                .tags(tags)
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("pulsar.consumer.retries")
+                .description("Failed messages scheduled for redelivery")
+                .tags(tags)
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("pulsar.consumer.dead.letters")
+                .description("Failed messages sent to the dead-letter topic after their last redelivery")
+                .tags(tags)
+                .register(meterRegistry);
+        this.dedupWindow = settings.getDedupWindow() == null || settings.getDedupWindow().isZero()
+                ? null
+                : new DedupWindow(settings.getDedupWindow(), settings.getDedupMaxEntries());
+        if (dedupWindow != null) {
+            Gauge.builder("pulsar.consumer.dedup.entries", dedupWindow, DedupWindow::size)
+                    .description("Message fingerprints remembered by the dedup window")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+        this.handlerTimer = clientMetrics.latencyTimer("pulsar.consumer.handler", "Time spent in the message handler", tags);
+        this.ackTimer = clientMetrics.latencyTimer("pulsar.consumer.ack.latency",
+                "Time from receiving a batch to acknowledging it", tags);
+        this.batchSizes = DistributionSummary.builder("pulsar.consumer.batch.size")
+                .description("Messages per batch receive")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("pulsar.consumer.lag", lagMillis, AtomicLong::get)
+                .description("Milliseconds between publish and handling of the last handled message")
+                .baseUnit("milliseconds")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("pulsar.consumer.receiver.queue", this, ManagedPulsarConsumer::receiverQueueDepth)
+                .description("Messages prefetched by the client and not yet received")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start the receive loop. Returns false if it is already running or still draining.
+     */
+    public boolean start() {
+        if (!state.compareAndSet(State.STOPPED, State.RUNNING)) {
+            return false;
+        }
+        consumer.resume();
+        loop = CompletableFuture.runAsync(this::run, executor);
+        log.info("Started consumer {} on {} with concurrency {}", name, topic, settings.getConcurrency());
+        return true;
+    }
+
+    /**
+     * Stop receiving, finish and acknowledge the in-flight batch, then stop.
+     * Returns false if the batch did not finish within the drain timeout.
+     */
+    public boolean drain() {
+        if (state.compareAndSet(State.RUNNING, State.DRAINING)) {
+            consumer.pause();
+            log.info("Draining consumer {}", name);
+        }
+        try {
+            loop.get(settings.getDrainTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Consumer {} did not drain within {}", name, settings.getDrainTimeout());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.error("Consumer {} loop failed", name, e);
+            return true;
+        }
+    }
+
+    /**
+     * Stop immediately. Messages received but not yet acknowledged are redelivered.
+     */
+    public void stop() {
+        if (state.compareAndSet(State.RUNNING, State.DRAINING) || state.get() == State.DRAINING) {
+            consumer.pause();
+            Thread thread = loopThread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+            loop.exceptionally(throwable -> null).join();
+            parkedKeys.clear();
+            consumer.redeliverUnacknowledgedMessages();
+            log.info("Stopped consumer {}", name);
+        }
+    }
+
+    /**
+     * Drain, falling back to stop, and close the underlying consumer.
+     */
+    public void close() throws PulsarClientException {
+        if (!drain()) {
+            stop();
+        }
+        consumer.close();
+    }
+
+    public ConsumerStatus status() {
+        return new ConsumerStatus(name, topic, state.get().name(), settings.getConcurrency(),
+                acked.get(), failed.get(), lagMillis.get());
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * Topic failed messages end up in, or null if this consumer redelivers them forever
+     */
+    public String getDeadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    public Consumer<T> getConsumer() {
+        return consumer;
+    }
+
+    private void run() {
+        loopThread = Thread.currentThread();
+        try {
+            while (state.get() == State.RUNNING && !Thread.currentThread().isInterrupted()) {
+                Messages<T> batch;
+                try {
+                    batch = consumer.batchReceive();
+                } catch (PulsarClientException e) {
+                    if (Thread.currentThread().isInterrupted() || state.get() != State.RUNNING) {
+                        break;
+                    }
+                    log.error("Error receiving messages for consumer {}", name, e);
+                    continue;
+                }
+                if (batch != null && batch.size() > 0) {
+                    process(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Consumer {} interrupted", name);
+        } finally {
+            loopThread = null;
+            state.set(State.STOPPED);
+        }
+    }
+
+    private void process(Messages<T> batch) throws InterruptedException {
+        long receivedAt = System.nanoTime();
+        List<Message<T>> messages = new ArrayList<>(batch.size());
+        batch.forEach(messages::add);
+        batchSizes.record(messages.size());
+
+        // Each lane is handled in order on one worker; lanes run in parallel
+        Collection<List<Message<T>>> lanes = lanes(messages);
+        LaneResults<T> results = new LaneResults<>();
+        if (settings.getConcurrency() <= 1) {
+            lanes.forEach(lane -> handleInOrder(lane, results));
+        } else {
+            Semaphore workers = new Semaphore(settings.getConcurrency());
+            List<CompletableFuture<Void>> running = new ArrayList<>(lanes.size());
+            for (List<Message<T>> lane : lanes) {
+                workers.acquire();
+                running.add(CompletableFuture.runAsync(() -> handleInOrder(lane, results), executor)
+                        .whenComplete((handled, throwable) -> workers.release()));
+            }
+            running.forEach(CompletableFuture::join);
+        }
+
+        acknowledge(messages, results);
+        ackTimer.record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * With key ordering, one lane per message key in arrival order; otherwise one lane per message.
+     */
+    private Collection<List<Message<T>>> lanes(List<Message<T>> messages) {
+        if (!settings.getKeyOrdered()) {
+            return messages.stream().map(List::of).toList();
+        }
+        Map<String, List<Message<T>>> byKey = new LinkedHashMap<>();
+        for (Message<T> msg : messages) {
+            String key = msg.hasKey() ? msg.getKey() : msg.getMessageId().toString();
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(msg);
+        }
+        return byKey.values();
+    }
+
+    /**
+     * Handle a lane in order. When a message fails and will be redelivered, its key is parked and the rest
+     * of the lane is held, so later events for the key are not applied before the one being redelivered.
+     * Held messages are handled once the parked message comes back and is handled or dead-lettered.
+     */
+    private void handleInOrder(List<Message<T>> lane, LaneResults<T> results) {
+        String key = settings.getKeyOrdered() && lane.get(0).hasKey() ? lane.get(0).getKey() : null;
+        for (int i = 0; i < lane.size(); i++) {
+            Message<T> msg = lane.get(i);
+            ParkedKey<T> parked = key == null ? null : parkedKeys.get(key);
+            if (parked != null && !parked.failedId.equals(originId(msg))) {
+                parked.hold(msg);
+                results.held.add(msg);
+                continue;
+            }
+
+            if (handle(msg)) {
+                results.handled.add(msg);
+                if (parked != null) {
+                    parkedKeys.remove(key);
+                    handleHeld(parked, results);
+                }
+                continue;
+            }
+
+            results.failed.add(msg);
+            if (key == null || willDeadLetter(msg)) {
+                if (parked != null) {
+                    parkedKeys.remove(key);
+                    handleHeld(parked, results);
+                }
+                continue;
+            }
+            ParkedKey<T> stillParked = parked != null ? parked : new ParkedKey<>(originId(msg));
+            parkedKeys.put(key, stillParked);
+            for (Message<T> later : lane.subList(i + 1, lane.size())) {
+                stillParked.hold(later);
+                results.held.add(later);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Handle the messages a key held while it was parked, parking it again if one of them fails
+     */
+    private void handleHeld(ParkedKey<T> unparked, LaneResults<T> results) {
+        List<Message<T>> held = new ArrayList<>(unparked.held.values());
+        for (int i = 0; i < held.size(); i++) {
+            Message<T> msg = held.get(i);
+            if (handle(msg)) {
+                results.handled.add(msg);
+                continue;
+            }
+            results.failed.add(msg);
+            if (!willDeadLetter(msg)) {
+                ParkedKey<T> parked = new ParkedKey<>(originId(msg));
+                held.subList(i + 1, held.size()).forEach(parked::hold);
+                parkedKeys.put(msg.getKey(), parked);
+                return;
+            }
+        }
+    }
+
+    private boolean handle(Message<T> msg) {
+        // Only handled messages are remembered, so a redelivery after a failure is handled again
+        long fingerprint = dedupWindow == null ? 0 : DedupWindow.fingerprint(msg);
+        if (dedupWindow != null && dedupWindow.contains(fingerprint)) {
+            duplicateCounter.increment();
+            return true;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            handler.accept(msg);
+            if (dedupWindow != null) {
+                dedupWindow.add(fingerprint);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("Handler failed for message {} on consumer {}", msg.getMessageId(), name, e);
+            return false;
+        } finally {
+            sample.stop(handlerTimer);
+            lagMillis.set(Math.max(0, System.currentTimeMillis() - msg.getPublishTime()));
+        }
+    }
+
+    private void acknowledge(List<Message<T>> messages, LaneResults<T> results) {
+        // Failed messages are tracked again by retry if they will be redelivered
+        results.handled.forEach(msg -> awaitingRedelivery.remove(msg.getMessageId()));
+        results.failed.forEach(msg -> awaitingRedelivery.remove(msg.getMessageId()));
+        results.held.forEach(msg -> awaitingRedelivery.add(msg.getMessageId()));
+
+        List<Message<T>> handled = new ArrayList<>(results.handled);
+        if (cumulativeAck && results.failed.isEmpty() && awaitingRedelivery.isEmpty()) {
+            // A cumulative ack covers one partition, so ack the last message of each
+            Map<String, MessageId> lastPerPartition = new LinkedHashMap<>();
+            messages.forEach(msg -> lastPerPartition.put(msg.getTopicName(), msg.getMessageId()));
+            lastPerPartition.values().forEach(consumer::acknowledgeCumulativeAsync);
+        } else if (!handled.isEmpty()) {
+            consumer.acknowledgeAsync(handled.stream().map(Message::getMessageId).toList());
+        }
+        results.failed.forEach(this::retry);
+        acked.addAndGet(handled.size());
+        failed.addAndGet(results.failed.size());
+    }
+
+    /**
+     * Redeliver a failed message after its backoff. The client sends it to the dead-letter topic instead
+     * once it has been redelivered maxRedeliveries times.
+     */
+    private void retry(Message<T> msg) {
+        int redeliveries = redeliveries(msg);
+        boolean deadLetter = willDeadLetter(msg);
+        (deadLetter ? deadLetterCounter : retryCounter).increment();
+        if (settings.getRetryLetter()) {
+            consumer.reconsumeLaterAsync(msg, settings.backoffMillis(redeliveries), TimeUnit.MILLISECONDS)
+                    .exceptionally(throwable -> {
+                        // Not acknowledged, so the broker redelivers it
+                        log.warn("Failed to move message {} to the retry topic on consumer {}", msg.getMessageId(), name, throwable);
+                        consumer.negativeAcknowledge(msg);
+                        return null;
+                    });
+        } else {
+            // A dead-lettered message is not redelivered, so it must not hold back cumulative acks
+            if (!deadLetter) {
+                awaitingRedelivery.add(msg.getMessageId());
+            }
+            consumer.negativeAcknowledge(msg);
+        }
+    }
+
+    /**
+     * Whether a failure of this message sends it to the dead-letter topic instead of redelivering it
+     */
+    private boolean willDeadLetter(Message<?> msg) {
+        return settings.getMaxRedeliveries() > 0 && redeliveries(msg) >= settings.getMaxRedeliveries();
+    }
+
+    /**
+     * Id of the message as first received; a retry-letter copy carries it as a property
+     */
+    private static String originId(Message<?> msg) {
+        String origin = msg.getProperty(RetryMessageUtil.PROPERTY_ORIGIN_MESSAGE_ID);
+        return origin != null ? origin : msg.getMessageId().toString();
+    }
+
+    /**
+     * Redeliveries so far: the broker's count for negative acks, or the retry-letter count carried in the message
+     */
+    private static int redeliveries(Message<?> msg) {
+        String reconsumeTimes = msg.getProperty(RetryMessageUtil.SYSTEM_PROPERTY_RECONSUMETIMES);
+        return reconsumeTimes == null ? msg.getRedeliveryCount() : Math.max(msg.getRedeliveryCount(), Integer.parseInt(reconsumeTimes));
+    }
+
+    private double receiverQueueDepth() {
+        try {
+            Integer queued = consumer.getStats().getMsgNumInReceiverQueue();
+            return queued == null ? 0 : queued;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A key waiting for its failed message to come back, with its later messages in arrival order
+     */
+    private static final class ParkedKey<T> {
+        private final String failedId;
+        private final Map<MessageId, Message<T>> held = new LinkedHashMap<>();
+
+        private ParkedKey(String failedId) {
+            this.failedId = failedId;
+        }
+
+        /**
+         * Hold a message; one redelivered after an ack timeout keeps its place
+         */
+        private void hold(Message<T> msg) {
+            held.putIfAbsent(msg.getMessageId(), msg);
+        }
+    }
+
+    /**
+     * Outcome of one batch, filled by the lane workers
+     */
+    private static final class LaneResults<T> {
+        private final List<Message<T>> handled = Collections.synchronizedList(new ArrayList<>());
+        private final List<Message<T>> failed = Collections.synchronizedList(new ArrayList<>());
+        private final List<Message<T>> held = Collections.synchronizedList(new ArrayList<>());
+    }
+}
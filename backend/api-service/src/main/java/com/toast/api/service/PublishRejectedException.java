@@ -0,0 +1,11 @@
+package com.toast.api.service;
+
+/**
+ * Thrown when a publish is refused up front because too many are already in flight.
+ */
+public class PublishRejectedException extends RuntimeException {
+
+    public PublishRejectedException(String message) {
+        super(message);
+    }
+}
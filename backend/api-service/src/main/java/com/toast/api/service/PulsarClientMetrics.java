@@ -0,0 +1,197 @@
+package com.toast.api.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.ConsumerBuilder;
+import org.apache.pulsar.client.api.ConsumerInterceptor;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.interceptor.ProducerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side latency metrics for producers and consumers, recorded through Pulsar interceptors.
+ * Timers are created once per topic (partition) and subscription and cached by topic name in each
+ * interceptor, so recording a message is a map lookup without allocation and a lock-free histogram update. Send latency is timed from the interceptor's beforeSend.
+ * End-to-end latency is derived from the publish timestamp, so it has millisecond resolution and includes
+ * any clock skew between hosts.
+ */
+@Component
+public class PulsarClientMetrics {
+
+    private static final Pattern TOPIC_PREFIX = Pattern.compile("^[a-z]+://[^/]+/[^/]+/");
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("-partition-\\d+$");
+
+    private final MeterRegistry meterRegistry;
+    private final ProducerInterceptor producerInterceptor = new SendLatencyInterceptor();
+
+    public PulsarClientMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records pulsar.producer.send.latency, publish to broker ack, tagged by topic
+     */
+    public ProducerInterceptor producerInterceptor() {
+        return producerInterceptor;
+    }
+
+    /**
+     * Add an interceptor recording pulsar.consumer.e2e.latency, publish to receive, tagged by topic and subscription
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ConsumerBuilder<T> intercept(ConsumerBuilder<T> builder, String subscription) {
+        // ConsumerBuilder.intercept takes generic varargs without @SafeVarargs, so build the array here once
+        ConsumerInterceptor<T>[] interceptors =
+                (ConsumerInterceptor<T>[]) new ConsumerInterceptor<?>[]{new EndToEndLatencyInterceptor<T>(subscription)};
+        return builder.intercept(interceptors);
+    }
+
+    /**
+     * Export the producer's queue of messages awaiting a broker ack as pulsar.producer.pending.
+     * Returns the gauge so it can be removed when the producer is closed.
+     */
+    public Meter registerPendingQueue(Producer<?> producer) {
+        return Gauge.builder("pulsar.producer.pending", producer, p -> p.getStats().getPendingQueueSize())
+                .description("Messages sent and not yet acknowledged by the broker")
+                .tags("topic", topicTag(producer.getTopic()), "producer", producer.getProducerName())
+                .register(meterRegistry);
+    }
+
+    public void remove(Meter meter) {
+        meterRegistry.remove(meter);
+    }
+
+    /**
+     * Latency timer published as a histogram, between 1 ms and 1 minute
+     */
+    Timer latencyTimer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Short topic name without the persistent://tenant/namespace/ prefix or partition suffix
+     */
+    static String topicTag(String topic) {
+        return PARTITION_SUFFIX.matcher(TOPIC_PREFIX.matcher(topic).replaceFirst("")).replaceFirst("");
+    }
+
+    /**
+     * ProducerInterceptor declares raw Producer and Message parameters, so the overrides must too;
+     * they only hand them on as wildcard types
+     */
+    @SuppressWarnings("rawtypes")
+    private class SendLatencyInterceptor implements ProducerInterceptor {
+
+        /**
+         * Start of each send awaiting its acknowledgement. A send that fails before the producer stamps
+         * a publish time still has one here; Pulsar acknowledges every message that passed beforeSend.
+         */
+        private final Map<Message<?>, Long> sendStartNanos = new ConcurrentHashMap<>();
+
+        private final Map<String, SendTimers> timersByTopic = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean eligible(Message message) {
+            return true;
+        }
+
+        @Override
+        public Message beforeSend(Producer producer, Message message) {
+            sendStartNanos.put(message, System.nanoTime());
+            return message;
+        }
+
+        @Override
+        public void onSendAcknowledgement(Producer producer, Message message, MessageId msgId, Throwable exception) {
+            recordSend(producer, message, exception);
+        }
+
+        private void recordSend(Producer<?> producer, Message<?> message, Throwable exception) {
+            Long startNanos = sendStartNanos.remove(message);
+            if (startNanos == null) {
+                return;
+            }
+            String topic = producer.getTopic();
+            SendTimers sendTimers = timersByTopic.get(topic);
+            if (sendTimers == null) {
+                sendTimers = timersByTopic.computeIfAbsent(topic,
+                        key -> new SendTimers(sendTimer(key, "success"), sendTimer(key, "failure")));
+            }
+            (exception == null ? sendTimers.success() : sendTimers.failure())
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer sendTimer(String topic, String outcome) {
+            return latencyTimer("pulsar.producer.send.latency", "Time from send to broker acknowledgement",
+                    Tags.of("topic", topicTag(topic), "outcome", outcome));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private record SendTimers(Timer success, Timer failure) {
+    }
+
+    private class EndToEndLatencyInterceptor<T> implements ConsumerInterceptor<T> {
+
+        private final String subscription;
+        private final Map<String, Timer> timersByTopic = new ConcurrentHashMap<>();
+
+        private EndToEndLatencyInterceptor(String subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public Message<T> beforeConsume(Consumer<T> consumer, Message<T> message) {
+            String topic = message.getTopicName();
+            Timer timer = timersByTopic.get(topic);
+            if (timer == null) {
+                timer = timersByTopic.computeIfAbsent(topic, key -> latencyTimer("pulsar.consumer.e2e.latency",
+                        "Time from publish to receive", Tags.of("topic", topicTag(key), "subscription", subscription)));
+            }
+            timer.record(Math.max(0, System.currentTimeMillis() - message.getPublishTime()), TimeUnit.MILLISECONDS);
+            return message;
+        }
+
+        @Override
+        public void onAcknowledge(Consumer<T> consumer, MessageId messageId, Throwable exception) {
+        }
+
+        @Override
+        public void onAcknowledgeCumulative(Consumer<T> consumer, MessageId messageId, Throwable exception) {
+        }
+
+        @Override
+        public void onNegativeAcksSend(Consumer<T> consumer, Set<MessageId> messageIds) {
+        }
+
+        @Override
+        public void onAckTimeoutSend(Consumer<T> consumer, Set<MessageId> messageIds) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
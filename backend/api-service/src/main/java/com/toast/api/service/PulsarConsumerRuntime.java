@@ -0,0 +1,103 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarConsumerProperties;
+import com.toast.common.dto.ConsumerStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.ConsumerBuilder;
+import org.apache.pulsar.client.api.DeadLetterPolicy;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.util.RetryMessageUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates managed consumers and keeps them by name so they can be started, drained and stopped over the API.
+ * The services that own a consumer close it on shutdown.
+ */
+@Component
+public class PulsarConsumerRuntime {
+
+    /**
+     * Created with every dead-letter topic so dead-lettered messages are retained until they are re-driven
+     */
+    public static final String REDRIVE_SUBSCRIPTION = "toast-dlq-redrive";
+
+    private final PulsarConsumerProperties consumerProperties;
+    private final ExecutorService pulsarTaskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final PulsarClientMetrics clientMetrics;
+    private final Map<String, ManagedPulsarConsumer<?>> consumers = new ConcurrentHashMap<>();
+
+    public PulsarConsumerRuntime(PulsarConsumerProperties consumerProperties,
+                                 ExecutorService pulsarTaskExecutor,
+                                 MeterRegistry meterRegistry,
+                                 PulsarClientMetrics clientMetrics) {
+        this.consumerProperties = consumerProperties;
+        this.pulsarTaskExecutor = pulsarTaskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.clientMetrics = clientMetrics;
+    }
+
+    /**
+     * Subscribe to the topic with the receive and redelivery settings configured for the subscription and wrap
+     * the consumer. Failed messages are redelivered with exponential backoff; with maxRedeliveries they go to
+     * {@code <topic>-<subscription>-DLQ} once exhausted, and with retryLetter they wait in
+     * {@code <topic>-<subscription>-RETRY} rather than being negatively acknowledged.
+     * The consumer is named after its subscription and is not started.
+     */
+    public <T> ManagedPulsarConsumer<T> subscribe(ConsumerBuilder<T> builder,
+                                                  String topic,
+                                                  String subscription,
+                                                  SubscriptionType subscriptionType,
+                                                  java.util.function.Consumer<Message<T>> handler) throws PulsarClientException {
+        PulsarConsumerProperties.Settings settings = consumerProperties.forSubscription(subscription);
+        builder.topic(topic)
+                .subscriptionName(subscription)
+                .subscriptionType(subscriptionType)
+                .receiverQueueSize(settings.getReceiverQueueSize())
+                .batchReceivePolicy(settings.batchReceivePolicy())
+                .negativeAckRedeliveryBackoff(settings.redeliveryBackoff())
+                .ackTimeoutRedeliveryBackoff(settings.redeliveryBackoff());
+        clientMetrics.intercept(builder, subscription);
+
+        String deadLetterTopic = null;
+        if (settings.getMaxRedeliveries() > 0 || settings.getRetryLetter()) {
+            deadLetterTopic = topic + "-" + subscription + RetryMessageUtil.DLQ_GROUP_TOPIC_SUFFIX;
+            builder.enableRetry(settings.getRetryLetter())
+                    .deadLetterPolicy(DeadLetterPolicy.builder()
+                            // Retry-letter consumers without a limit keep retrying at backoffMax
+                            .maxRedeliverCount(settings.getMaxRedeliveries() > 0 ? settings.getMaxRedeliveries() : Integer.MAX_VALUE)
+                            .deadLetterTopic(deadLetterTopic)
+                            .retryLetterTopic(topic + "-" + subscription + RetryMessageUtil.RETRY_GROUP_TOPIC_SUFFIX)
+                            .initialSubscriptionName(REDRIVE_SUBSCRIPTION)
+                            .build());
+        }
+        Consumer<T> consumer = builder.subscribe();
+
+        ManagedPulsarConsumer<T> managed = new ManagedPulsarConsumer<>(subscription, topic, deadLetterTopic, consumer,
+                subscriptionType, handler, settings, pulsarTaskExecutor, meterRegistry, clientMetrics);
+        consumers.put(subscription, managed);
+        return managed;
+    }
+
+    public Optional<ManagedPulsarConsumer<?>> find(String name) {
+        return Optional.ofNullable(consumers.get(name));
+    }
+
+    public Collection<ManagedPulsarConsumer<?>> all() {
+        return consumers.values();
+    }
+
+    public List<ConsumerStatus> statuses() {
+        return consumers.values().stream().map(ManagedPulsarConsumer::status).toList();
+    }
+}
@@ -0,0 +1,121 @@
+package com.toast.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.SubscriptionInitialPosition;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.util.RetryMessageUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves dead-lettered messages back to the topic of the consumer that gave up on them. Messages are read
+ * through the {@link PulsarConsumerRuntime#REDRIVE_SUBSCRIPTION} subscription and acknowledged once the
+ * republish is acknowledged, so an interrupted re-drive continues where it stopped. Republished messages
+ * keep their key and properties and start over with a fresh redelivery count.
+ */
+@Component
+@Slf4j
+public class PulsarDeadLetterService {
+
+    private final PulsarClient pulsarClient;
+    private final PulsarConsumerRuntime consumerRuntime;
+    private final PulsarProducerPool producerPool;
+    private final ExecutorService pulsarTaskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Duration receiveTimeout;
+
+    public PulsarDeadLetterService(PulsarClient pulsarClient,
+                                   PulsarConsumerRuntime consumerRuntime,
+                                   PulsarProducerPool producerPool,
+                                   ExecutorService pulsarTaskExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${pulsar.dead-letters.receive-timeout:1s}") Duration receiveTimeout) {
+        this.pulsarClient = pulsarClient;
+        this.consumerRuntime = consumerRuntime;
+        this.producerPool = producerPool;
+        this.pulsarTaskExecutor = pulsarTaskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.receiveTimeout = receiveTimeout;
+    }
+
+    /**
+     * Republish up to maxMessages dead-lettered messages of a managed consumer to its topic. Completes with the
+     * number moved; fails with NoSuchElementException for an unknown consumer, IllegalArgumentException if it
+     * has no dead-letter topic and IllegalStateException if a re-drive for it is already running.
+     */
+    public CompletableFuture<Integer> redrive(String consumerName, int maxMessages) {
+        ManagedPulsarConsumer<?> managed = consumerRuntime.find(consumerName).orElse(null);
+        if (managed == null) {
+            return CompletableFuture.failedFuture(new NoSuchElementException("Unknown consumer: " + consumerName));
+        }
+        if (managed.getDeadLetterTopic() == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Consumer " + consumerName + " has no dead-letter topic"));
+        }
+        return CompletableFuture.supplyAsync(() -> redrive(managed, maxMessages), pulsarTaskExecutor);
+    }
+
+    private int redrive(ManagedPulsarConsumer<?> managed, int maxMessages) {
+        String deadLetterTopic = managed.getDeadLetterTopic();
+        // Exclusive, so a second re-drive of the same topic fails instead of interleaving with this one
+        try (Consumer<byte[]> consumer = pulsarClient.newConsumer()
+                .topic(deadLetterTopic)
+                .subscriptionName(PulsarConsumerRuntime.REDRIVE_SUBSCRIPTION)
+                .subscriptionType(SubscriptionType.Exclusive)
+                .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                .subscribe()) {
+            List<CompletableFuture<Void>> moves = new ArrayList<>();
+            while (moves.size() < maxMessages) {
+                Message<byte[]> msg = consumer.receive((int) receiveTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (msg == null) {
+                    break;
+                }
+                String key = msg.hasKey() ? msg.getKey() : null;
+                moves.add(producerPool.send(managed.getTopic(), key, msg.getData(), republishProperties(msg))
+                        .thenCompose(messageId -> consumer.acknowledgeAsync(msg)));
+            }
+            CompletableFuture.allOf(moves.toArray(CompletableFuture[]::new)).join();
+
+            Counter.builder("pulsar.consumer.redriven")
+                    .description("Dead-lettered messages republished to their topic")
+                    .tags("topic", PulsarClientMetrics.topicTag(managed.getTopic()), "subscription", managed.getName())
+                    .register(meterRegistry)
+                    .increment(moves.size());
+            log.info("Re-drove {} messages from {} to {}", moves.size(), deadLetterTopic, managed.getTopic());
+            return moves.size();
+        } catch (PulsarClientException.ConsumerBusyException e) {
+            throw new IllegalStateException("A re-drive of " + deadLetterTopic + " is already running");
+        } catch (PulsarClientException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Drop the retry bookkeeping so the message starts over; the original message id is kept for tracing
+     */
+    private static Map<String, String> republishProperties(Message<byte[]> msg) {
+        Map<String, String> properties = new HashMap<>(msg.getProperties());
+        properties.remove(RetryMessageUtil.SYSTEM_PROPERTY_RECONSUMETIMES);
+        properties.remove(RetryMessageUtil.SYSTEM_PROPERTY_DELAY_TIME);
+        properties.remove(RetryMessageUtil.SYSTEM_PROPERTY_REAL_TOPIC);
+        properties.remove(RetryMessageUtil.SYSTEM_PROPERTY_RETRY_TOPIC);
+        return properties;
+    }
+}
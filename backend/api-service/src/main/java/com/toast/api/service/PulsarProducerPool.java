@@ -0,0 +1,171 @@
+package com.toast.api.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.toast.api.config.PulsarCompressionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.HashingScheme;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageRoutingMode;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.TypedMessageBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Shared producers for arbitrary topics, keyed by topic and producer settings.
+ * Producers are created lazily (concurrent requests for the same key share one creation)
+ * and closed once they have been idle for the configured timeout or the pool is full.
+ */
+@Component
+@Slf4j
+public class PulsarProducerPool {
+
+    private static final Pattern TOPIC_NAME = Pattern.compile("[a-zA-Z0-9._-]+");
+
+    public record ProducerKey(String topic, boolean batching, CompressionType compression, MessageRoutingMode routingMode) {
+    }
+
+    private final PulsarClient pulsarClient;
+    private final PulsarCompressionProperties compressionProperties;
+    private final MeterRegistry meterRegistry;
+    private final PulsarClientMetrics clientMetrics;
+    private final Map<Producer<byte[]>, Meter> pendingGauges = new ConcurrentHashMap<>();
+    private final AsyncLoadingCache<ProducerKey, Producer<byte[]>> producers;
+
+    public PulsarProducerPool(PulsarClient pulsarClient,
+                              PulsarCompressionProperties compressionProperties,
+                              MeterRegistry meterRegistry,
+                              PulsarClientMetrics clientMetrics,
+                              @Value("${pulsar.producer-pool.max-size:100}") long maxSize,
+                              @Value("${pulsar.producer-pool.idle-timeout:5m}") Duration idleTimeout) {
+        this.pulsarClient = pulsarClient;
+        this.compressionProperties = compressionProperties;
+        this.meterRegistry = meterRegistry;
+        this.clientMetrics = clientMetrics;
+        this.producers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTimeout)
+                .removalListener(this::onRemoval)
+                .buildAsync((key, executor) -> create(key));
+
+        Gauge.builder("pulsar.producer.pool.size", producers, cache -> cache.synchronous().estimatedSize())
+                .description("Producers currently held by the pool")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        producers.synchronous().invalidateAll();
+        producers.synchronous().cleanUp();
+    }
+
+    /**
+     * Default settings for a topic: batching on, the topic's configured codec, round-robin partition routing.
+     */
+    public ProducerKey defaultsFor(String topic) {
+        return new ProducerKey(topic, true, compressionProperties.forTopic(topic), MessageRoutingMode.RoundRobinPartition);
+    }
+
+    public CompletableFuture<Producer<byte[]>> getProducer(ProducerKey key) {
+        if (!TOPIC_NAME.matcher(key.topic()).matches()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid topic name: " + key.topic()));
+        }
+        return producers.get(key);
+    }
+
+    /**
+     * Send to any topic through a pooled producer with the topic's default settings
+     */
+    public CompletableFuture<MessageId> send(String topic, String key, String message, Map<String, String> properties) {
+        return send(topic, key, message.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    public CompletableFuture<MessageId> send(String topic, String key, byte[] value, Map<String, String> properties) {
+        ProducerKey producerKey = defaultsFor(topic);
+        return send(producerKey, key, value, properties)
+                .exceptionallyCompose(throwable -> {
+                    // The producer may have been evicted and closed between lookup and send; retry once on a fresh one
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    if (cause instanceof PulsarClientException.AlreadyClosedException) {
+                        producers.synchronous().invalidate(producerKey);
+                        return send(producerKey, key, value, properties);
+                    }
+                    return CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    private CompletableFuture<MessageId> send(ProducerKey producerKey, String key, byte[] value, Map<String, String> properties) {
+        return getProducer(producerKey).thenCompose(producer -> {
+            TypedMessageBuilder<byte[]> messageBuilder = producer.newMessage()
+                    .value(value);
+            if (key != null) {
+                messageBuilder.key(key);
+            }
+            if (properties != null) {
+                properties.forEach(messageBuilder::property);
+            }
+            return messageBuilder.sendAsync();
+        });
+    }
+
+    private CompletableFuture<Producer<byte[]>> create(ProducerKey key) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return pulsarClient.newProducer()
+                .topic(key.topic())
+                .enableBatching(key.batching())
+                .compressionType(key.compression())
+                .messageRoutingMode(key.routingMode())
+                .hashingScheme(HashingScheme.Murmur3_32Hash)
+                .intercept(clientMetrics.producerInterceptor())
+                .createAsync()
+                .whenComplete((producer, throwable) -> {
+                    sample.stop(Timer.builder("pulsar.producer.pool.creation")
+                            .description("Time to create a pooled producer")
+                            .tag("outcome", throwable == null ? "success" : "failure")
+                            .register(meterRegistry));
+                    if (throwable == null) {
+                        pendingGauges.put(producer, clientMetrics.registerPendingQueue(producer));
+                        log.info("Created pooled producer for {}", key);
+                    } else {
+                        log.warn("Failed to create pooled producer for {}", key, throwable);
+                    }
+                });
+    }
+
+    private void onRemoval(ProducerKey key, Producer<byte[]> producer, RemovalCause cause) {
+        if (cause.wasEvicted()) {
+            Counter.builder("pulsar.producer.pool.evictions")
+                    .description("Pooled producers closed because they were idle or the pool was full")
+                    .tag("cause", cause.name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+        }
+        if (producer != null) {
+            log.info("Closing pooled producer for {} ({})", key, cause);
+            Meter pendingGauge = pendingGauges.remove(producer);
+            if (pendingGauge != null) {
+                clientMetrics.remove(pendingGauge);
+            }
+            producer.closeAsync();
+        }
+    }
+}
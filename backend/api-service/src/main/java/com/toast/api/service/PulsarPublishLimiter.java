@@ -0,0 +1,66 @@
+package com.toast.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of publishes awaiting a broker ack and bounds how long a caller waits for one.
+ * When the broker slows down, new publishes are rejected immediately instead of queueing up.
+ */
+@Component
+@Slf4j
+public class PulsarPublishLimiter {
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Duration timeout;
+
+    public PulsarPublishLimiter(@Value("${pulsar.publish.max-in-flight:1000}") int maxInFlight,
+                                @Value("${pulsar.publish.timeout:10s}") Duration timeout) {
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Start a publish if there is capacity. The permit is held until the broker answers,
+     * even if the caller's view of the future has already timed out.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> publish) {
+        if (!permits.tryAcquire()) {
+            log.warn("Rejecting publish, {} publishes already in flight", inFlight());
+            return CompletableFuture.failedFuture(new PublishRejectedException("Too many publishes in flight"));
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = publish.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        // The returned stage completes after the release, so a caller that waits for it can publish again;
+        // its timeout does not complete the send itself
+        return future.whenComplete((result, throwable) -> permits.release())
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether submit turned the publish away for lack of capacity
+     */
+    public static boolean isRejected(CompletableFuture<?> future) {
+        return future.isCompletedExceptionally()
+                && future.exceptionNow() instanceof PublishRejectedException;
+    }
+
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+}
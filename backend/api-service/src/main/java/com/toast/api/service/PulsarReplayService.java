@@ -0,0 +1,428 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarTopicProperties;
+import com.toast.common.dto.ReplayRequest;
+import com.toast.common.dto.ReplayStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.admin.PulsarAdminException;
+import org.apache.pulsar.client.api.BatchReceivePolicy;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageIdAdv;
+import org.apache.pulsar.client.api.Messages;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.SubscriptionInitialPosition;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a topic from a publish time or message id, reading every partition in parallel with batch receives.
+ * <p>
+ * Each partition is read through a durable subscription named {@code replay-<id>}, acknowledged cumulatively
+ * after every handled batch. The subscription cursor is the checkpoint: a replay that is cancelled or dies can
+ * be resumed with the same id. The subscription's properties hold the partition's end position, taken when the
+ * replay first started, and whether the partition has finished, so a resume covers the same window even after
+ * a restart. Every partition keeps its subscription until the whole replay has completed, so a resume never
+ * restarts a partition that had already finished; all of them are removed together at the end. While they
+ * exist, the broker retains the topic's backlog from the checkpoints on.
+ */
+@Service
+@Slf4j
+public class PulsarReplayService {
+
+    private static final String SUBSCRIPTION_PREFIX = "replay-";
+    private static final Pattern REPLAY_ID = Pattern.compile("[a-zA-Z0-9._-]+");
+    private static final String END_PROPERTY = "replay.end";
+    private static final String FINISHED_PROPERTY = "replay.finished";
+
+    public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final PulsarClient pulsarClient;
+    private final PulsarAdmin pulsarAdmin;
+    private final PulsarProducerPool producerPool;
+    private final PulsarTopicProperties topicProperties;
+    private final ExecutorService pulsarTaskExecutor;
+    private final int batchSize;
+    private final Duration batchTimeout;
+    private final Duration idleTimeout;
+    private final Map<String, Replay> replays = new ConcurrentHashMap<>();
+
+    public PulsarReplayService(PulsarClient pulsarClient,
+                               PulsarAdmin pulsarAdmin,
+                               PulsarProducerPool producerPool,
+                               PulsarTopicProperties topicProperties,
+                               ExecutorService pulsarTaskExecutor,
+                               @Value("${pulsar.replay.batch-size:500}") int batchSize,
+                               @Value("${pulsar.replay.batch-timeout:200ms}") Duration batchTimeout,
+                               @Value("${pulsar.replay.idle-timeout:10s}") Duration idleTimeout) {
+        this.pulsarClient = pulsarClient;
+        this.pulsarAdmin = pulsarAdmin;
+        this.producerPool = producerPool;
+        this.topicProperties = topicProperties;
+        this.pulsarTaskExecutor = pulsarTaskExecutor;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Replay into request.targetTopic, keeping keys and properties, or only count messages if there is none
+     *
+     * @throws IllegalArgumentException if the target topic is not configured for publishing, or as for
+     *                                  {@link #start(String, ReplayRequest, Function)}
+     */
+    public ReplayStatus start(String id, ReplayRequest request) {
+        String target = request.getTargetTopic();
+        // The same allowlist as publishing by name, so a replay can not create topics or pool producers for them
+        if (target != null && !target.isBlank() && !topicProperties.isPublishable(target)) {
+            throw new IllegalArgumentException("Target topic is not configured for publishing: " + target);
+        }
+        return start(id, request, target == null || target.isBlank()
+                ? msg -> CompletableFuture.completedFuture(null)
+                : msg -> producerPool.send(target, msg.hasKey() ? msg.getKey() : null, msg.getData(), msg.getProperties()));
+    }
+
+    /**
+     * Start a replay in the background. The handler's futures for a batch must complete before the
+     * batch is checkpointed; a failed future fails the replay, and a resume starts again from that batch.
+     *
+     * @throws IllegalArgumentException if the id or start position is invalid, or a message id is given for
+     *                                  a partitioned topic
+     * @throws IllegalStateException    if a replay with this id is already running
+     */
+    public ReplayStatus start(String id, ReplayRequest request, Function<Message<byte[]>, CompletableFuture<?>> handler) {
+        if (!REPLAY_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid replay id: " + id);
+        }
+        MessageId fromMessageId = request.getFromMessageId() == null ? null : parseMessageId(request.getFromMessageId());
+        // A message id positions a single partition and gives the others no start, so it is only accepted
+        // for non-partitioned topics. A resume may need it too, for partitions whose checkpoint is gone
+        if (fromMessageId != null
+                && pulsarClient.getPartitionsForTopic(request.getTopic()).join().size() > 1) {
+            throw new IllegalArgumentException("fromMessageId can not position the partitioned topic "
+                    + request.getTopic() + "; use fromPublishTime");
+        }
+
+        Replay replay = replays.compute(id, (key, existing) -> {
+            if (existing != null && existing.state == State.RUNNING) {
+                throw new IllegalStateException("Replay " + id + " is already running");
+            }
+            return new Replay(id, request, fromMessageId, handler);
+        });
+        CompletableFuture.runAsync(() -> run(replay), pulsarTaskExecutor);
+        return replay.status();
+    }
+
+    /**
+     * Stop a running replay after its current batches. Its checkpoint is kept for a resume.
+     */
+    public Optional<ReplayStatus> cancel(String id) {
+        Replay replay = replays.get(id);
+        if (replay == null) {
+            return Optional.empty();
+        }
+        replay.cancelled = true;
+        return Optional.of(replay.status());
+    }
+
+    public Optional<ReplayStatus> getStatus(String id) {
+        return Optional.ofNullable(replays.get(id)).map(Replay::status);
+    }
+
+    public Collection<ReplayStatus> getStatuses() {
+        return replays.values().stream().map(Replay::status).toList();
+    }
+
+    private void run(Replay replay) {
+        // Subscriptions of all partitions, removed together once the whole replay has completed
+        List<Consumer<byte[]>> consumers = new CopyOnWriteArrayList<>();
+        try {
+            List<String> partitions = pulsarClient.getPartitionsForTopic(replay.request.getTopic()).join();
+            replay.partitions = partitions.size();
+            log.info("Starting replay {} of {} ({} partitions{})", replay.id, replay.request.getTopic(),
+                    partitions.size(), replay.request.isResume() ? ", resumed" : "");
+
+            List<CompletableFuture<Void>> reads = new ArrayList<>(partitions.size());
+            for (String partition : partitions) {
+                reads.add(CompletableFuture.runAsync(() -> replayPartition(replay, partition, consumers), pulsarTaskExecutor)
+                        .whenComplete((result, throwable) -> {
+                            // One failed partition stops the others; all keep their checkpoints
+                            if (throwable != null) {
+                                replay.cancelled = true;
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).join();
+
+            replay.finish(replay.cancelled ? State.CANCELLED : State.COMPLETED, null);
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Replay {} failed", replay.id, cause);
+            replay.finish(State.FAILED, cause.getMessage());
+        } finally {
+            release(replay, consumers);
+        }
+        log.info("Replay {} finished: {} messages, {}", replay.id, replay.replayed.get(), replay.state);
+    }
+
+    /**
+     * Read one partition up to its end. The consumer is left open, and its subscription in place, for run to
+     * remove once every partition is done.
+     */
+    private void replayPartition(Replay replay, String partition, List<Consumer<byte[]>> consumers) {
+        ReplayRequest request = replay.request;
+        String subscription = SUBSCRIPTION_PREFIX + replay.id;
+        try {
+            // Only a subscription left by an earlier run is a checkpoint; without one a resume starts over
+            Map<String, String> checkpoint = request.isResume() ? checkpoint(partition, subscription) : null;
+            Consumer<byte[]> consumer = pulsarClient.newConsumer()
+                    .topic(partition)
+                    .subscriptionName(subscription)
+                    .subscriptionType(SubscriptionType.Exclusive)
+                    .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                    .receiverQueueSize(batchSize)
+                    .batchReceivePolicy(BatchReceivePolicy.builder()
+                            .maxNumMessages(batchSize)
+                            .timeout((int) batchTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                            .build())
+                    .subscribe();
+            consumers.add(consumer);
+            if (checkpoint != null && checkpoint.containsKey(FINISHED_PROPERTY)) {
+                consumer.pause();
+                return;
+            }
+
+            if (checkpoint == null) {
+                seekToStart(consumer, replay);
+            }
+
+            // Replay up to what had been published when the replay first started
+            MessageIdAdv end = checkpoint != null && checkpoint.containsKey(END_PROPERTY)
+                    ? (MessageIdAdv) MessageId.fromByteArray(Base64.getDecoder().decode(checkpoint.get(END_PROPERTY)))
+                    : (MessageIdAdv) consumer.getLastMessageIds().get(0);
+            if (checkpoint == null) {
+                saveCheckpoint(partition, subscription, end, false);
+            }
+            boolean done = end.getEntryId() < 0;
+            long idleSince = System.nanoTime();
+
+            while (!done && !replay.cancelled) {
+                Messages<byte[]> batch = consumer.batchReceive();
+                if (batch.size() == 0) {
+                    // Nothing left after the checkpoint, e.g. a resume of a partition that had already finished
+                    done = System.nanoTime() - idleSince > idleTimeout.toNanos();
+                    continue;
+                }
+                idleSince = System.nanoTime();
+
+                List<Message<byte[]>> messages = new ArrayList<>(batch.size());
+                for (Message<byte[]> msg : batch) {
+                    int position = position((MessageIdAdv) msg.getMessageId(), end);
+                    if (position > 0 || (request.getToPublishTime() != null
+                            && msg.getPublishTime() > request.getToPublishTime().toEpochMilli())) {
+                        done = true;
+                        break;
+                    }
+                    messages.add(msg);
+                    if (position == 0) {
+                        done = true;
+                        break;
+                    }
+                }
+                if (messages.isEmpty()) {
+                    continue;
+                }
+
+                replay.acquire(messages.size());
+                CompletableFuture.allOf(messages.stream()
+                        .map(replay.handler)
+                        .toArray(CompletableFuture<?>[]::new)).join();
+
+                // Checkpoint
+                consumer.acknowledgeCumulative(messages.get(messages.size() - 1).getMessageId());
+                replay.replayed.addAndGet(messages.size());
+            }
+
+            consumer.pause();
+            if (!replay.cancelled) {
+                saveCheckpoint(partition, subscription, end, true);
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Properties of the partition's replay subscription, or null if it does not exist
+     */
+    private Map<String, String> checkpoint(String partition, String subscription) {
+        try {
+            return pulsarAdmin.topics().getSubscriptionProperties(partition, subscription);
+        } catch (PulsarAdminException.NotFoundException e) {
+            return null;
+        } catch (PulsarAdminException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void saveCheckpoint(String partition, String subscription, MessageId end, boolean finished) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(END_PROPERTY, Base64.getEncoder().encodeToString(end.toByteArray()));
+        if (finished) {
+            properties.put(FINISHED_PROPERTY, "true");
+        }
+        try {
+            pulsarAdmin.topics().updateSubscriptionProperties(partition, subscription, properties);
+        } catch (PulsarAdminException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Remove the subscriptions of a completed replay; otherwise only close the consumers and keep the checkpoints
+     */
+    private void release(Replay replay, List<Consumer<byte[]>> consumers) {
+        boolean completed = replay.state == State.COMPLETED;
+        for (Consumer<byte[]> consumer : consumers) {
+            try {
+                if (completed) {
+                    consumer.unsubscribe();
+                } else {
+                    consumer.close();
+                }
+            } catch (PulsarClientException e) {
+                log.warn("Failed to release replay {} subscription on {}", replay.id, consumer.getTopic(), e);
+            }
+        }
+    }
+
+    private void seekToStart(Consumer<byte[]> consumer, Replay replay) throws PulsarClientException {
+        MessageId fromMessageId = replay.fromMessageId;
+        if (fromMessageId != null) {
+            consumer.seek(fromMessageId);
+        } else if (replay.request.getFromPublishTime() != null) {
+            consumer.seek(replay.request.getFromPublishTime().toEpochMilli());
+        } else {
+            consumer.seek(MessageId.earliest);
+        }
+    }
+
+    /**
+     * -1 before the end position, 0 at the last message of it, 1 after it. The end id may not carry a
+     * batch index, in which case the last message of that entry's batch is the end.
+     */
+    private static int position(MessageIdAdv id, MessageIdAdv end) {
+        int result = Long.compare(id.getLedgerId(), end.getLedgerId());
+        if (result == 0) {
+            result = Long.compare(id.getEntryId(), end.getEntryId());
+        }
+        if (result != 0) {
+            return result;
+        }
+        if (end.getBatchIndex() >= 0) {
+            return Integer.compare(id.getBatchIndex(), end.getBatchIndex());
+        }
+        return id.getBatchIndex() < 0 || id.getBatchIndex() >= id.getBatchSize() - 1 ? 0 : -1;
+    }
+
+    private static MessageId parseMessageId(String value) {
+        String[] parts = value.split(":");
+        if (parts.length < 2 || parts.length > 4) {
+            throw new IllegalArgumentException("Invalid message id: " + value);
+        }
+        try {
+            return new MessageIdImpl(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    parts.length > 2 ? Integer.parseInt(parts[2]) : -1);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid message id: " + value);
+        }
+    }
+
+    private static final class Replay {
+
+        private final String id;
+        private final ReplayRequest request;
+        private final MessageId fromMessageId;
+        private final Function<Message<byte[]>, CompletableFuture<?>> handler;
+        private final long intervalNanos;
+        private final AtomicLong replayed = new AtomicLong();
+        private final Instant startedAt = Instant.now();
+
+        private long nextPermitNanos = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile int partitions;
+        private volatile State state = State.RUNNING;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private Replay(String id, ReplayRequest request, MessageId fromMessageId,
+                       Function<Message<byte[]>, CompletableFuture<?>> handler) {
+            this.id = id;
+            this.request = request;
+            this.fromMessageId = fromMessageId;
+            this.handler = handler;
+            Integer rate = request.getMaxMessagesPerSecond();
+            this.intervalNanos = rate == null ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+
+        /**
+         * Wait until the rate ceiling, shared by all partitions, allows another batch of messages
+         */
+        private void acquire(int messages) {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextPermitNanos);
+                nextPermitNanos = start + intervalNanos * messages;
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }
+        }
+
+        private void finish(State state, String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.state = state;
+        }
+
+        private ReplayStatus status() {
+            return new ReplayStatus(id, request.getTopic(), request.getTargetTopic(), state.name(), partitions,
+                    replayed.get(), startedAt, finishedAt, error);
+        }
+    }
+}
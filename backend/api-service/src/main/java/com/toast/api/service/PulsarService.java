@@ -1,61 +1,166 @@
 package com.toast.api.service;
 
+import com.toast.api.cache.UserCache;
+import com.toast.api.config.PulsarCompressionProperties;
+import com.toast.common.dto.UserEvent;
+import com.toast.common.entity.UserOutboxEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.client.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class PulsarService {
 
+    public static final String EVENT_TYPE_PROPERTY = "eventType";
+    public static final String USER_CHANGED_EVENT = "user-changed";
+    public static final String USERS_CHANGED_EVENT = "users-changed";
+
+    public static final String CHANGE_TYPE_PROPERTY = "changeType";
+    public static final String OUTBOX_ID_PROPERTY = "outboxId";
+    public static final String IDEMPOTENCY_KEY_PROPERTY = DedupWindow.IDEMPOTENCY_KEY_PROPERTY;
+
+    public static final String USER_ACTIVITY_TOPIC = "user-activity";
+
+    /**
+     * Avro schema for user activity events; registered with the broker by the first producer or consumer
+     */
+    public static final Schema<UserEvent> USER_EVENT_SCHEMA = Schema.AVRO(UserEvent.class);
+
     @Autowired
     private PulsarClient pulsarClient;
 
+    @Autowired
+    private PulsarCompressionProperties compressionProperties;
+
+    @Autowired
+    private PulsarConsumerRuntime consumerRuntime;
+
+    @Autowired
+    private PulsarClientMetrics clientMetrics;
+
+    @Autowired
+    private UserCache userCache;
+
+    // Producer names must be unique per instance and stable across restarts: the broker deduplicates by
+    // producer name and sequence id, and a recreated producer continues from the last persisted sequence id
+    @Value("${pulsar.instance-id:${HOSTNAME:local}}")
+    private String instanceId;
+
     private Producer<String> producer;
-    private Consumer<String> consumer;
+    private Producer<String> userChangeProducer;
+    private ManagedPulsarConsumer<String> consumer;
+    private Reader<String> userChangeReader;
+    private Producer<UserEvent> userActivityProducer;
+    private ManagedPulsarConsumer<UserEvent> userActivityConsumer;
 
     @PostConstruct
     public void init() throws PulsarClientException {
         // Initialize producer
         producer = pulsarClient.newProducer(Schema.STRING)
                 .topic("user-events")
-                .producerName("toast-api-producer")
+                .producerName("toast-api-producer-" + instanceId)
+                .compressionType(compressionProperties.forTopic("user-events"))
+                // Key_Shared consumers need every batch to hold a single key
+                .batcherBuilder(BatcherBuilder.KEY_BASED)
+                // On partitioned topics keyed messages go to murmur3(key) % partitions, so each user id stays on one partition
+                .hashingScheme(HashingScheme.Murmur3_32Hash)
+                .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
+                .intercept(clientMetrics.producerInterceptor())
                 .create();
+        clientMetrics.registerPendingQueue(producer);
 
-        // Initialize consumer
-        consumer = pulsarClient.newConsumer(Schema.STRING)
+        // Outbox events keep producer-generated sequence ids: identity ids are not assigned in commit order,
+        // so using them as sequence ids would let the broker drop a change committed after a higher id was sent
+        userChangeProducer = pulsarClient.newProducer(Schema.STRING)
                 .topic("user-events")
-                .subscriptionName("toast-api-subscription")
-                .subscriptionType(SubscriptionType.Exclusive)
-                .subscribe();
+                .producerName("toast-user-outbox-" + instanceId)
+                .compressionType(compressionProperties.forTopic("user-events"))
+                .batcherBuilder(BatcherBuilder.KEY_BASED)
+                .hashingScheme(HashingScheme.Murmur3_32Hash)
+                .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
+                .intercept(clientMetrics.producerInterceptor())
+                .create();
+        clientMetrics.registerPendingQueue(userChangeProducer);
+
+        // Key_Shared spreads user ids across instances; within an instance events are handled in parallel across users
+        // and in order per user (keyOrdered in the subscription settings)
+        consumer = consumerRuntime.subscribe(pulsarClient.newConsumer(Schema.STRING)
+                        .keySharedPolicy(KeySharedPolicy.autoSplitHashRange()),
+                "user-events", "toast-api-subscription", SubscriptionType.Key_Shared, this::onUserEvent);
+
+        // Every instance reads user-changed events from the tail of the topic
+        // so cached users are evicted everywhere, not only where the write happened
+        userChangeReader = pulsarClient.newReader(Schema.STRING)
+                .topic("user-events")
+                .startMessageId(MessageId.latest)
+                .readerListener((reader, msg) -> onUserChange(msg))
+                .create();
+
+        userActivityProducer = pulsarClient.newProducer(USER_EVENT_SCHEMA)
+                .topic(USER_ACTIVITY_TOPIC)
+                .producerName("toast-user-activity-producer-" + instanceId)
+                .compressionType(compressionProperties.forTopic(USER_ACTIVITY_TOPIC))
+                .batcherBuilder(BatcherBuilder.KEY_BASED)
+                .hashingScheme(HashingScheme.Murmur3_32Hash)
+                .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
+                .intercept(clientMetrics.producerInterceptor())
+                .create();
+        clientMetrics.registerPendingQueue(userActivityProducer);
+
+        userActivityConsumer = consumerRuntime.subscribe(pulsarClient.newConsumer(USER_EVENT_SCHEMA)
+                        .keySharedPolicy(KeySharedPolicy.autoSplitHashRange()),
+                USER_ACTIVITY_TOPIC, "toast-user-activity-subscription", SubscriptionType.Key_Shared, this::onUserActivity);
 
         // Start consuming messages in background
-        startConsumer();
+        consumer.start();
+        userActivityConsumer.start();
     }
 
     @PreDestroy
-    public void cleanup() throws PulsarClientException {
+    public void cleanup() throws IOException {
         if (producer != null) {
             producer.close();
         }
+        if (userChangeProducer != null) {
+            userChangeProducer.close();
+        }
         if (consumer != null) {
             consumer.close();
         }
+        if (userChangeReader != null) {
+            userChangeReader.close();
+        }
+        if (userActivityProducer != null) {
+            userActivityProducer.close();
+        }
+        if (userActivityConsumer != null) {
+            userActivityConsumer.close();
+        }
     }
 
     /**
-     * Send a message to Pulsar topic
+     * Send a message to Pulsar topic. A client retry with the same idempotency key is skipped by
+     * consumers that deduplicate.
      */
-    public CompletableFuture<MessageId> sendMessage(String message) {
+    public CompletableFuture<MessageId> sendMessage(String message, String idempotencyKey) {
         try {
             log.info("Sending message to Pulsar: {}", message);
-            return producer.sendAsync(message);
+            if (idempotencyKey == null) {
+                return producer.sendAsync(message);
+            }
+            return producer.newMessage()
+                    .value(message)
+                    .property(IDEMPOTENCY_KEY_PROPERTY, idempotencyKey)
+                    .sendAsync();
         } catch (Exception e) {
             log.error("Error sending message to Pulsar", e);
             CompletableFuture<MessageId> future = new CompletableFuture<>();
@@ -64,14 +169,6 @@ public class PulsarService {
         }
     }
 
-    /**
-     * Send a message synchronously
-     */
-    public MessageId sendMessageSync(String message) throws PulsarClientException {
-        log.info("Sending message synchronously to Pulsar: {}", message);
-        return producer.send(message);
-    }
-
     /**
      * Send a message with key
      */
@@ -91,35 +188,90 @@ public class PulsarService {
     }
 
     /**
-     * Start consuming messages in background
+     * Send a typed user activity event, keyed by user id so events for one user stay ordered
+     */
+    public CompletableFuture<MessageId> sendUserEvent(UserEvent event, Map<String, String> properties) {
+        try {
+            TypedMessageBuilder<UserEvent> messageBuilder = userActivityProducer.newMessage()
+                    .value(event);
+            if (event.getUserId() != null) {
+                messageBuilder.key(event.getUserId());
+            }
+            if (properties != null) {
+                properties.forEach(messageBuilder::property);
+            }
+            return messageBuilder.sendAsync();
+        } catch (Exception e) {
+            log.error("Error sending user event to Pulsar", e);
+            CompletableFuture<MessageId> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Publish a user change recorded in the outbox, keyed by user id so changes to one user stay in order.
+     * An event covering many users goes out as users-changed with the ids as its value, empty for any user.
+     * Every instance drops the users from its cache when it reads the event.
      */
-    private void startConsumer() {
-        CompletableFuture.runAsync(() -> {
-            while (true) {
-                try {
-                    // Wait for a message
-                    Message<String> msg = consumer.receive(1, TimeUnit.SECONDS);
-                    if (msg != null) {
-                        log.info("Received message from Pulsar: {} (MessageId: {})", 
-                                msg.getValue(), msg.getMessageId());
-                        
-                        // Acknowledge the message
-                        consumer.acknowledge(msg);
-                    }
-                } catch (PulsarClientException e) {
-                    log.error("Error receiving message from Pulsar", e);
-                } catch (Exception e) {
-                    log.error("Unexpected error in consumer", e);
+    public CompletableFuture<MessageId> sendUserChangedEvent(UserOutboxEvent event) {
+        try {
+            TypedMessageBuilder<String> messageBuilder = userChangeProducer.newMessage()
+                    .property(CHANGE_TYPE_PROPERTY, event.getChangeType().name())
+                    .property(OUTBOX_ID_PROPERTY, String.valueOf(event.getId()))
+                    // Consumers skip a batch the relay republished after a failure by this key
+                    .property(IDEMPOTENCY_KEY_PROPERTY, "outbox-" + event.getId());
+            if (event.coversManyUsers()) {
+                messageBuilder.value(event.getPayload() != null ? event.getPayload() : "")
+                        .property(EVENT_TYPE_PROPERTY, USERS_CHANGED_EVENT);
+            } else {
+                messageBuilder.key(String.valueOf(event.getUserId()))
+                        .value(event.getPayload() != null ? event.getPayload() : "User changed: " + event.getUserId())
+                        .property(EVENT_TYPE_PROPERTY, USER_CHANGED_EVENT);
+            }
+            if (event.getUsername() != null) {
+                messageBuilder.property("username", event.getUsername());
+            }
+            return messageBuilder.sendAsync();
+        } catch (Exception e) {
+            log.error("Error sending user changed event to Pulsar", e);
+            CompletableFuture<MessageId> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private void onUserChange(Message<String> msg) {
+        String eventType = msg.getProperty(EVENT_TYPE_PROPERTY);
+        if (USER_CHANGED_EVENT.equals(eventType)) {
+            userCache.evict(Long.valueOf(msg.getKey()), msg.getProperty("username"));
+        } else if (USERS_CHANGED_EVENT.equals(eventType)) {
+            String ids = msg.getValue();
+            if (ids == null || ids.isEmpty()) {
+                userCache.evictAll();
+            } else {
+                for (String id : ids.split(",")) {
+                    userCache.evict(Long.valueOf(id), null);
                 }
             }
-        });
+        }
+    }
+
+    private void onUserEvent(Message<String> msg) {
+        log.info("Received message from Pulsar: {} (MessageId: {})", msg.getValue(), msg.getMessageId());
+    }
+
+    private void onUserActivity(Message<UserEvent> msg) {
+        UserEvent event = msg.getValue();
+        log.info("Received user event {} for user {}: {} (MessageId: {})",
+                event.getEventType(), event.getUserId(), event.getAction(), msg.getMessageId());
     }
 
     /**
      * Get consumer stats
      */
     public ConsumerStats getConsumerStats() throws PulsarClientException {
-        return consumer.getStats();
+        return consumer.getConsumer().getStats();
     }
 
     /**
@@ -0,0 +1,205 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarTopicProperties;
+import com.toast.common.dto.TopicStatsSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.common.policies.data.SubscriptionStats;
+import org.apache.pulsar.common.policies.data.TopicStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Samples topic and subscription statistics from the admin API in the background and keeps the latest
+ * snapshot per topic. Requests and metric scrapes read the snapshots and never call the broker;
+ * a topic that is asked for but not tracked yet is sampled once and then tracked.
+ */
+@Component
+@Slf4j
+public class PulsarTopicStatsSampler {
+
+    private static final Pattern TOPIC_NAME = Pattern.compile("[a-zA-Z0-9._-]+");
+
+    private final PulsarAdmin pulsarAdmin;
+    private final PulsarTopicProperties topicProperties;
+    private final MeterRegistry meterRegistry;
+    private final List<String> initialTopics;
+    private final Duration interval;
+    private final int maxTopics;
+
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Map<String, TopicStatsSnapshot> snapshots = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public PulsarTopicStatsSampler(PulsarAdmin pulsarAdmin,
+                                   PulsarTopicProperties topicProperties,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${pulsar.stats.topics:user-events,user-activity,batch-events}") List<String> initialTopics,
+                                   @Value("${pulsar.stats.interval:15s}") Duration interval,
+                                   @Value("${pulsar.stats.max-topics:50}") int maxTopics) {
+        this.pulsarAdmin = pulsarAdmin;
+        this.topicProperties = topicProperties;
+        this.meterRegistry = meterRegistry;
+        this.initialTopics = initialTopics;
+        this.interval = interval;
+        this.maxTopics = maxTopics;
+    }
+
+    @PostConstruct
+    public void start() {
+        initialTopics.forEach(this::track);
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("pulsar-stats").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::sampleAll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Latest snapshot of a topic. Fails with IllegalArgumentException for an invalid name and with the
+     * admin client's NotFoundException for a topic that does not exist.
+     */
+    public CompletableFuture<TopicStatsSnapshot> getStats(String topic) {
+        TopicStatsSnapshot snapshot = snapshots.get(topic);
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot);
+        }
+        if (!TOPIC_NAME.matcher(topic).matches()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid topic name: " + topic));
+        }
+        return sample(topic).thenApply(sampled -> {
+            track(topic);
+            store(topic, sampled);
+            return sampled;
+        });
+    }
+
+    private void track(String topic) {
+        if (topics.contains(topic) || topics.size() >= maxTopics || !topics.add(topic)) {
+            return;
+        }
+        topicGauge("pulsar.topic.msg.rate.in", topic, "Messages published per second", null, TopicStatsSnapshot::msgRateIn);
+        topicGauge("pulsar.topic.msg.rate.out", topic, "Messages dispatched per second", null, TopicStatsSnapshot::msgRateOut);
+        topicGauge("pulsar.topic.throughput.in", topic, "Bytes published per second", "bytes", TopicStatsSnapshot::msgThroughputIn);
+        topicGauge("pulsar.topic.throughput.out", topic, "Bytes dispatched per second", "bytes", TopicStatsSnapshot::msgThroughputOut);
+        topicGauge("pulsar.topic.storage.size", topic, "Bytes stored for the topic", "bytes", TopicStatsSnapshot::storageSize);
+        topicGauge("pulsar.topic.backlog.size", topic, "Bytes not yet acknowledged by every subscription", "bytes",
+                TopicStatsSnapshot::backlogSize);
+    }
+
+    private void sampleAll() {
+        try {
+            CompletableFuture.allOf(topics.stream()
+                            .map(topic -> sample(topic).thenAccept(snapshot -> store(topic, snapshot)).exceptionally(throwable -> {
+                                log.debug("Failed to sample stats for {}: {}", topic, throwable.getMessage());
+                                return null;
+                            }))
+                            .toArray(CompletableFuture[]::new))
+                    .get(interval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Sampling topic stats did not finish within {}", interval);
+        }
+    }
+
+    private CompletableFuture<TopicStatsSnapshot> sample(String topic) {
+        String fullName = topicProperties.fullName(topic);
+        return pulsarAdmin.topics().getPartitionedTopicMetadataAsync(fullName)
+                .thenCompose(metadata -> metadata.partitions > 0
+                        ? pulsarAdmin.topics().getPartitionedStatsAsync(fullName, false, false, false, true)
+                                .thenApply(stats -> toSnapshot(topic, metadata.partitions, stats))
+                        : pulsarAdmin.topics().getStatsAsync(fullName, false, false, true)
+                                .thenApply(stats -> toSnapshot(topic, 0, stats)));
+    }
+
+    /**
+     * Keep the snapshot of a tracked topic; snapshots of other topics are not cached
+     */
+    private void store(String topic, TopicStatsSnapshot snapshot) {
+        if (topics.contains(topic)) {
+            snapshots.put(topic, snapshot);
+            snapshot.subscriptions().keySet().forEach(subscription -> trackSubscription(topic, subscription));
+        }
+    }
+
+    private static TopicStatsSnapshot toSnapshot(String topic, int partitions, TopicStats stats) {
+        long now = System.currentTimeMillis();
+        Map<String, TopicStatsSnapshot.Subscription> subscriptions = new HashMap<>();
+        stats.getSubscriptions().forEach((name, subscription) -> subscriptions.put(name, toSnapshot(subscription, now)));
+        return new TopicStatsSnapshot(topic, partitions, stats.getMsgRateIn(), stats.getMsgRateOut(),
+                stats.getMsgThroughputIn(), stats.getMsgThroughputOut(), stats.getStorageSize(), stats.getBacklogSize(),
+                subscriptions, Instant.ofEpochMilli(now));
+    }
+
+    private static TopicStatsSnapshot.Subscription toSnapshot(SubscriptionStats stats, long now) {
+        long earliest = stats.getEarliestMsgPublishTimeInBacklog();
+        return new TopicStatsSnapshot.Subscription(stats.getMsgBacklog(), stats.getMsgRateOut(), stats.getMsgRateRedeliver(),
+                stats.getUnackedMessages(), stats.getConsumers().size(),
+                stats.getMsgBacklog() > 0 && earliest > 0 ? Math.max(0, now - earliest) : 0);
+    }
+
+    private void trackSubscription(String topic, String subscription) {
+        if (!subscriptions.add(topic + "/" + subscription)) {
+            return;
+        }
+        subscriptionGauge("pulsar.subscription.backlog", topic, subscription, "Messages not yet acknowledged", null,
+                TopicStatsSnapshot.Subscription::msgBacklog);
+        subscriptionGauge("pulsar.subscription.lag", topic, subscription, "Age of the oldest unacknowledged message",
+                "milliseconds", TopicStatsSnapshot.Subscription::lagMillis);
+        subscriptionGauge("pulsar.subscription.msg.rate.out", topic, subscription, "Messages dispatched per second", null,
+                TopicStatsSnapshot.Subscription::msgRateOut);
+        subscriptionGauge("pulsar.subscription.msg.rate.redeliver", topic, subscription, "Messages redelivered per second", null,
+                TopicStatsSnapshot.Subscription::msgRateRedeliver);
+        subscriptionGauge("pulsar.subscription.unacked", topic, subscription, "Messages delivered and not yet acknowledged", null,
+                TopicStatsSnapshot.Subscription::unackedMessages);
+        subscriptionGauge("pulsar.subscription.consumers", topic, subscription, "Connected consumers", null,
+                TopicStatsSnapshot.Subscription::consumers);
+    }
+
+    private void topicGauge(String name, String topic, String description, String baseUnit,
+                            ToDoubleFunction<TopicStatsSnapshot> value) {
+        Gauge.builder(name, snapshots, latest -> {
+                    TopicStatsSnapshot snapshot = latest.get(topic);
+                    return snapshot == null ? Double.NaN : value.applyAsDouble(snapshot);
+                })
+                .description(description)
+                .baseUnit(baseUnit)
+                .tag("topic", topic)
+                .register(meterRegistry);
+    }
+
+    private void subscriptionGauge(String name, String topic, String subscription, String description, String baseUnit,
+                                   ToDoubleFunction<TopicStatsSnapshot.Subscription> value) {
+        Gauge.builder(name, snapshots, latest -> {
+                    TopicStatsSnapshot snapshot = latest.get(topic);
+                    TopicStatsSnapshot.Subscription stats = snapshot == null ? null : snapshot.subscriptions().get(subscription);
+                    return stats == null ? Double.NaN : value.applyAsDouble(stats);
+                })
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags("topic", topic, "subscription", subscription)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,8 @@
+package com.toast.api.service;
+
+/**
+ * Line-oriented formats accepted by bulk user import and produced by export.
+ */
+public enum UserDataFormat {
+    NDJSON, CSV
+}
@@ -0,0 +1,13 @@
+package com.toast.api.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface UserExportService {
+
+    /**
+     * Write every user with an id greater than afterId to the output, in id order.
+     * Returns the number of rows written.
+     */
+    long exportUsers(Long afterId, UserDataFormat format, OutputStream output) throws IOException;
+}
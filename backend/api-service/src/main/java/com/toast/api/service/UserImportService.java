@@ -0,0 +1,16 @@
+package com.toast.api.service;
+
+import com.toast.common.dto.UserImportResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface UserImportService {
+
+    /**
+     * Import users row by row from the input, reporting each outcome to the sink as soon as it is known.
+     * Returns the number of rows processed.
+     */
+    long importUsers(InputStream input, UserDataFormat format, Consumer<UserImportResult> sink) throws IOException;
+}
@@ -0,0 +1,191 @@
+package com.toast.api.service;
+
+import com.toast.common.entity.UserOutboxEvent;
+import com.toast.common.repository.UserOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes user changes from the outbox table to user-events. A short transaction claims the oldest rows
+ * for claim-timeout; they are then sent as one batch outside any transaction, and a second short transaction
+ * deletes the acknowledged rows and releases the rest. A Postgres advisory lock serializes claiming, and no
+ * rows are claimed while another claim is live, so only one instance publishes at a time and changes to one
+ * user go out in the order they committed. Delivery is at least once: rows whose relay crashed are
+ * republished once their claim expires.
+ */
+@Component
+@Slf4j
+public class UserOutboxRelay {
+
+    // Advisory lock key shared by all instances relaying the user outbox
+    private static final long RELAY_LOCK = 0x7573657200000001L;
+
+    private final UserOutboxRepository outboxRepository;
+    private final PulsarService pulsarService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration interval;
+    private final Duration publishTimeout;
+    private final Duration claimTimeout;
+
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+    private ScheduledExecutorService scheduler;
+
+    public UserOutboxRelay(UserOutboxRepository outboxRepository,
+                           PulsarService pulsarService,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${user-outbox.batch-size:500}") int batchSize,
+                           @Value("${user-outbox.interval:200ms}") Duration interval,
+                           @Value("${user-outbox.publish-timeout:10s}") Duration publishTimeout,
+                           @Value("${user-outbox.claim-timeout:30s}") Duration claimTimeout) {
+        if (claimTimeout.compareTo(publishTimeout) <= 0) {
+            throw new IllegalArgumentException("user-outbox.claim-timeout must be longer than user-outbox.publish-timeout");
+        }
+        this.outboxRepository = outboxRepository;
+        this.pulsarService = pulsarService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.publishTimeout = publishTimeout;
+        this.claimTimeout = claimTimeout;
+
+        this.publishedCounter = Counter.builder("user.outbox.events")
+                .description("User outbox events relayed to Pulsar")
+                .tag("outcome", "published")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("user.outbox.events")
+                .description("User outbox events relayed to Pulsar")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("user.outbox.batch")
+                .description("Time to claim, publish and delete one outbox batch")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("user-outbox-relay").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::drain, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Relay full batches back to back until the outbox is drained or a publish fails
+     */
+    private void drain() {
+        try {
+            int relayed;
+            do {
+                relayed = batchTimer.record(this::relayBatch);
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.warn("Relaying the user outbox failed, retrying in {}", interval, e);
+        }
+    }
+
+    /**
+     * Publish the oldest batch and delete what the broker acknowledged. Returns the number of rows deleted,
+     * or 0 if another relay holds a claim or a publish failed.
+     */
+    int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<UserOutboxEvent> events = transactionTemplate.execute(status -> {
+            if (!outboxRepository.tryLock(RELAY_LOCK) || outboxRepository.existsByClaimedUntilAfter(now)) {
+                return List.of();
+            }
+            List<UserOutboxEvent> oldest = outboxRepository.findOldest(Limit.of(batchSize));
+            if (!oldest.isEmpty()) {
+                outboxRepository.claim(oldest.stream().map(UserOutboxEvent::getId).toList(), now.plus(claimTimeout));
+            }
+            return oldest;
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        // No connection or lock is held while waiting for the broker
+        List<CompletableFuture<?>> sends = new ArrayList<>(events.size());
+        for (UserOutboxEvent event : events) {
+            sends.add(pulsarService.sendUserChangedEvent(event));
+        }
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(publishTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Some sends failed or timed out; keep those rows and delete the rest below
+        }
+
+        // A user's events after its first failed one stay too, so the retry republishes them in order.
+        // An event covering many users may touch any of them, so every event after it stays if it failed
+        Map<Long, Long> firstFailure = new HashMap<>();
+        long barrier = Long.MAX_VALUE;
+        for (int i = 0; i < events.size(); i++) {
+            CompletableFuture<?> send = sends.get(i);
+            if (!send.isDone() || send.isCompletedExceptionally()) {
+                UserOutboxEvent event = events.get(i);
+                if (event.coversManyUsers()) {
+                    barrier = Math.min(barrier, event.getId());
+                } else {
+                    firstFailure.putIfAbsent(event.getUserId(), event.getId());
+                }
+            }
+        }
+        List<Long> published = new ArrayList<>(events.size());
+        List<Long> kept = new ArrayList<>();
+        for (UserOutboxEvent event : events) {
+            Long failedAt = firstFailure.get(event.getUserId());
+            if (event.getId() < barrier && (failedAt == null || event.getId() < failedAt)) {
+                published.add(event.getId());
+            } else {
+                kept.add(event.getId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!published.isEmpty()) {
+                outboxRepository.deleteByIds(published);
+            }
+            if (!kept.isEmpty()) {
+                outboxRepository.release(kept);
+            }
+        });
+
+        publishedCounter.increment(published.size());
+        if (!kept.isEmpty()) {
+            failedCounter.increment(kept.size());
+            log.warn("Failed to publish {} of {} user outbox events", kept.size(), events.size());
+            return 0;
+        }
+        return published.size();
+    }
+}
@@ -1,21 +1,49 @@
 package com.toast.api.service;
 
 import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.CursorPage;
+import com.toast.common.dto.UserPatch;
+import com.toast.common.dto.UserSelection;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.dto.UserVersion;
 import com.toast.common.entity.User;
 
-import java.util.List;
-
 public interface UserService {
     
-    ApiResponse<List<User>> getAllUsers();
+    ApiResponse<CursorPage<UserSummary>> getUsers(String cursor, Integer size, User.UserRole role, Boolean isActive);
+    
+    ApiResponse<CursorPage<UserSummary>> searchUsers(String query, String cursor, Integer size);
     
     ApiResponse<User> getUserById(Long id);
     
+    /**
+     * Get a user known to be at the given version, reloading it if the cached copy is older.
+     */
+    ApiResponse<User> getUserById(Long id, Long version);
+    
+    ApiResponse<UserSummary> getUserSummary(Long id);
+    
+    ApiResponse<Long> getUserVersion(Long id);
+    
+    ApiResponse<UserVersion> getUserVersionByUsername(String username);
+    
     ApiResponse<User> getUserByUsername(String username);
     
     ApiResponse<User> createUser(User user);
     
     ApiResponse<User> updateUser(Long id, User user);
     
+    /**
+     * Apply a partial update guarded by the caller's version.
+     * Returns the new version, or throws OptimisticLockingFailureException if the version is stale.
+     */
+    ApiResponse<Long> patchUser(Long id, UserPatch patch);
+    
     ApiResponse<Void> deleteUser(Long id);
+    
+    ApiResponse<Integer> setUsersActive(UserSelection selection, boolean active);
+    
+    ApiResponse<Integer> changeUsersRole(UserSelection selection, User.UserRole role);
+    
+    ApiResponse<Integer> deleteUsers(UserSelection selection);
 } 
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.toast.api.service.impl;
+
+import com.toast.common.entity.User;
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.util.regex.Pattern;
+
+/**
+ * Maps unique constraint violations on users back to the field that clashed.
+ */
+final class UserConflicts {
+
+    private static final Pattern USERNAME = namePattern(User.USERNAME_CONSTRAINT);
+    private static final Pattern EMAIL = namePattern(User.EMAIL_CONSTRAINT);
+
+    private UserConflicts() {
+    }
+
+    /**
+     * Returns the user-facing conflict message, or null if the failure is not a users unique violation.
+     */
+    static String conflictMessage(Throwable failure) {
+        String constraint = null;
+        String detail = "";
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && constraint == null) {
+                constraint = violation.getConstraintName();
+            }
+            detail = String.valueOf(cause.getMessage());
+        }
+
+        if (isConstraint(constraint, USERNAME) || detail.contains("(username)")) {
+            return "Username already exists";
+        }
+        if (isConstraint(constraint, EMAIL) || detail.contains("(email)")) {
+            return "Email already exists";
+        }
+        return null;
+    }
+
+    /**
+     * Some databases report more than the bare name, e.g. H2's
+     * "public.uk_users_email_INDEX_6 ON public.users(email NULLS LAST) ..."
+     */
+    private static boolean isConstraint(String reported, Pattern constraint) {
+        return reported != null && constraint.matcher(reported).find();
+    }
+
+    private static Pattern namePattern(String constraint) {
+        return Pattern.compile("(?<![a-z0-9_])" + constraint + "(?![a-z0-9])", Pattern.CASE_INSENSITIVE);
+    }
+}
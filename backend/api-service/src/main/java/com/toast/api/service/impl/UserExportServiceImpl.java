@@ -0,0 +1,109 @@
+package com.toast.api.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.service.UserDataFormat;
+import com.toast.api.service.UserExportService;
+import com.toast.common.dto.UserExportRow;
+import com.toast.common.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class UserExportServiceImpl implements UserExportService {
+
+    private static final String CSV_HEADER = "id,username,email,firstName,lastName,isActive,role,createdAt,updatedAt";
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UserExportServiceImpl(UserRepository userRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Postgres only honours the fetch size (server-side cursor) inside a transaction
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public long exportUsers(Long afterId, UserDataFormat format, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (format == UserDataFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long rows;
+        try {
+            rows = transactionTemplate.execute(status -> {
+                long count = 0;
+                try (Stream<UserExportRow> stream = userRepository.streamForExport(afterId == null ? 0L : afterId)) {
+                    Iterator<UserExportRow> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        writeRow(writer, format, iterator.next());
+                        count++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("Exported {} users after id {}", rows, afterId);
+        return rows;
+    }
+
+    private void writeRow(Writer writer, UserDataFormat format, UserExportRow row) throws IOException {
+        if (format == UserDataFormat.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(row));
+        } else {
+            writer.write(String.valueOf(row.id()));
+            writer.write(',');
+            writer.write(csv(row.username()));
+            writer.write(',');
+            writer.write(csv(row.email()));
+            writer.write(',');
+            writer.write(csv(row.firstName()));
+            writer.write(',');
+            writer.write(csv(row.lastName()));
+            writer.write(',');
+            writer.write(row.isActive() == null ? "" : row.isActive().toString());
+            writer.write(',');
+            writer.write(row.role() == null ? "" : row.role().name());
+            writer.write(',');
+            writer.write(row.createdAt() == null ? "" : row.createdAt().toString());
+            writer.write(',');
+            writer.write(row.updatedAt() == null ? "" : row.updatedAt().toString());
+        }
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,187 @@
+package com.toast.api.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.service.UserDataFormat;
+import com.toast.api.service.UserImportService;
+import com.toast.common.dto.UserImportResult;
+import com.toast.common.entity.User;
+import com.toast.common.entity.UserOutboxEvent;
+import com.toast.common.repository.UserOutboxRepository;
+import com.toast.common.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+public class UserImportServiceImpl implements UserImportService {
+
+    private final UserRepository userRepository;
+    private final UserOutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public UserImportServiceImpl(UserRepository userRepository,
+                                 UserOutboxRepository outboxRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 @Value("${user-import.batch-size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public long importUsers(InputStream input, UserDataFormat format, Consumer<UserImportResult> sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        String[] csvHeader = null;
+        long lineNumber = 0;
+        long rows = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == UserDataFormat.CSV && csvHeader == null) {
+                csvHeader = splitCsv(line);
+                continue;
+            }
+
+            rows++;
+            User user;
+            try {
+                user = format == UserDataFormat.CSV ? fromCsv(csvHeader, splitCsv(line)) : objectMapper.readValue(line, User.class);
+            } catch (IOException | IllegalArgumentException e) {
+                sink.accept(UserImportResult.failed(lineNumber, "Unparseable row: " + e.getMessage()));
+                continue;
+            }
+            if (user.getUsername() == null || user.getUsername().isBlank()
+                    || user.getEmail() == null || user.getEmail().isBlank()) {
+                sink.accept(UserImportResult.failed(lineNumber, "Username and email are required"));
+                continue;
+            }
+
+            user.setId(null);
+            user.setVersion(null);
+            batch.add(new ImportRow(lineNumber, user));
+            if (batch.size() == batchSize) {
+                writeBatch(batch, sink);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, sink);
+        }
+
+        log.info("Imported {} user rows", rows);
+        return rows;
+    }
+
+    /**
+     * Insert the batch in one transaction, with one outbox event covering the created users. If any row
+     * violates a constraint the whole transaction rolls back, so fall back to row-by-row inserts to report
+     * each outcome.
+     */
+    private void writeBatch(List<ImportRow> batch, Consumer<UserImportResult> sink) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<User> saved = userRepository.saveAll(batch.stream().map(ImportRow::user).toList());
+                outboxRepository.save(UserOutboxEvent.ofUsers(UserOutboxEvent.ChangeType.CREATED,
+                        saved.stream().map(User::getId).toList()));
+            });
+            batch.forEach(row -> sink.accept(UserImportResult.created(row.line(), row.user().getId())));
+            return;
+        } catch (DataAccessException e) {
+            log.debug("Batch insert failed, retrying {} rows individually", batch.size(), e);
+        }
+
+        for (ImportRow row : batch) {
+            User user = row.user();
+            user.setId(null);
+            user.setVersion(null);
+            try {
+                User saved = transactionTemplate.execute(status -> {
+                    User created = userRepository.saveAndFlush(user);
+                    outboxRepository.save(UserOutboxEvent.ofUsers(UserOutboxEvent.ChangeType.CREATED, List.of(created.getId())));
+                    return created;
+                });
+                sink.accept(UserImportResult.created(row.line(), saved.getId()));
+            } catch (DataAccessException e) {
+                String conflict = UserConflicts.conflictMessage(e);
+                sink.accept(UserImportResult.failed(row.line(),
+                        conflict != null ? conflict : "Failed to create user: " + e.getMostSpecificCause().getMessage()));
+            }
+        }
+    }
+
+    private User fromCsv(String[] header, String[] values) {
+        User user = new User();
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            String value = values[i].isEmpty() ? null : values[i];
+            switch (header[i].trim().toLowerCase()) {
+                case "username" -> user.setUsername(value);
+                case "email" -> user.setEmail(value);
+                case "firstname", "first_name" -> user.setFirstName(value);
+                case "lastname", "last_name" -> user.setLastName(value);
+                case "isactive", "is_active" -> user.setIsActive(value == null ? Boolean.TRUE : Boolean.valueOf(value));
+                case "role" -> user.setRole(value == null ? User.UserRole.USER : User.UserRole.valueOf(value.toUpperCase()));
+                default -> {
+                    // Unknown columns are ignored
+                }
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Split a CSV line, honouring double-quoted fields and "" escapes.
+     */
+    private static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private record ImportRow(long line, User user) {
+    }
+}
@@ -1,56 +1,212 @@
 package com.toast.api.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.cache.UserCache;
 import com.toast.api.service.UserService;
 import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.CursorPage;
+import com.toast.common.dto.PageCursor;
+import com.toast.common.dto.UserPatch;
+import com.toast.common.dto.UserSelection;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.dto.UserVersion;
 import com.toast.common.entity.User;
+import com.toast.common.entity.UserOutboxEvent;
+import com.toast.common.repository.UserOutboxRepository;
 import com.toast.common.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Inject;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class UserServiceImpl implements UserService {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    static final int MAX_BULK_IDS = 10_000;
+    static final int MIN_SEARCH_LENGTH = 3;
+    static final int MAX_SEARCH_RESULTS = 1000;
+
     private final UserRepository userRepository;
+    private final UserOutboxRepository outboxRepository;
+    private final UserCache userCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public ApiResponse<CursorPage<UserSummary>> getUsers(String cursor, Integer size, User.UserRole role, Boolean isActive) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // Fetch one extra row to learn whether another page exists without a count query
+        Limit limit = Limit.of(pageSize + 1);
+
+        PageCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = PageCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error("Invalid cursor");
+            }
+        }
+        List<UserSummary> users = findPage(role, isActive, after, limit);
+
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            UserSummary last = users.get(pageSize - 1);
+            nextCursor = new PageCursor(last.createdAt(), last.id()).encode();
+        }
+        return ApiResponse.success("Users retrieved successfully", CursorPage.of(users, nextCursor));
+    }
+
+    /**
+     * Run the page query written for this combination of filters
+     */
+    private List<UserSummary> findPage(User.UserRole role, Boolean isActive, PageCursor after, Limit limit) {
+        if (role != null && isActive != null) {
+            return after == null
+                    ? userRepository.findFirstPageByRoleAndActive(role, isActive, limit)
+                    : userRepository.findPageByRoleAndActiveAfter(role.name(), isActive, after.createdAt(), after.id(), limit);
+        }
+        if (role != null) {
+            return after == null
+                    ? userRepository.findFirstPageByRole(role, limit)
+                    : userRepository.findPageByRoleAfter(role.name(), after.createdAt(), after.id(), limit);
+        }
+        if (isActive != null) {
+            return after == null
+                    ? userRepository.findFirstPageByActive(isActive, limit)
+                    : userRepository.findPageByActiveAfter(isActive, after.createdAt(), after.id(), limit);
+        }
+        return after == null
+                ? userRepository.findFirstPage(limit)
+                : userRepository.findPageAfter(after.createdAt(), after.id(), limit);
+    }
 
     @Override
-    public ApiResponse<List<User>> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        return ApiResponse.success("Users retrieved successfully", users);
+    @Transactional(readOnly = true)
+    public ApiResponse<CursorPage<UserSummary>> searchUsers(String query, String cursor, Integer size) {
+        String term = query == null ? "" : query.trim();
+        // Shorter terms have no trigrams to look up and would fall back to a full scan
+        if (term.length() < MIN_SEARCH_LENGTH) {
+            return ApiResponse.error("Search query must be at least " + MIN_SEARCH_LENGTH + " characters");
+        }
+
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int offset;
+        try {
+            offset = cursor == null || cursor.isBlank() ? 0 : Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            return ApiResponse.error("Invalid cursor");
+        }
+        if (offset < 0 || offset >= MAX_SEARCH_RESULTS) {
+            return ApiResponse.error("Invalid cursor");
+        }
+        pageSize = Math.min(pageSize, MAX_SEARCH_RESULTS - offset);
+
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        // Ranking looks at no more candidates per column than a result list can hold
+        List<UserSummary> users = userRepository.search(term, "%" + escaped + "%", escaped + "%",
+                MAX_SEARCH_RESULTS, pageSize + 1, offset);
+
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            if (offset + pageSize < MAX_SEARCH_RESULTS) {
+                nextCursor = String.valueOf(offset + pageSize);
+            }
+        }
+        return ApiResponse.success("Users found", CursorPage.of(users, nextCursor));
     }
 
+    // Single lookups run in the repository's read-only transaction, so a cache hit opens none
     @Override
     public ApiResponse<User> getUserById(Long id) {
-        return userRepository.findById(id)
+        return userCache.getById(id, userRepository::findById)
+                .map(user -> ApiResponse.success("User found", user))
+                .orElse(ApiResponse.error("User not found"));
+    }
+
+    @Override
+    public ApiResponse<User> getUserById(Long id, Long version) {
+        Optional<User> user = userCache.getById(id, userRepository::findById);
+        if (user.isPresent() && !version.equals(user.get().getVersion())) {
+            // The change has committed but its eviction has not reached this instance yet
+            userCache.evict(id, user.get().getUsername());
+            user = userCache.getById(id, userRepository::findById);
+        }
+        return user
+                .map(found -> ApiResponse.success("User found", found))
+                .orElse(ApiResponse.error("User not found"));
+    }
+
+    @Override
+    public ApiResponse<UserSummary> getUserSummary(Long id) {
+        return userRepository.findSummaryById(id)
                 .map(user -> ApiResponse.success("User found", user))
                 .orElse(ApiResponse.error("User not found"));
     }
 
+    @Override
+    public ApiResponse<Long> getUserVersion(Long id) {
+        return userRepository.findVersionById(id)
+                .map(version -> ApiResponse.success("User found", version))
+                .orElse(ApiResponse.error("User not found"));
+    }
+
+    @Override
+    public ApiResponse<UserVersion> getUserVersionByUsername(String username) {
+        return userRepository.findVersionByUsername(username)
+                .map(version -> ApiResponse.success("User found", version))
+                .orElse(ApiResponse.error("User not found"));
+    }
+
     @Override
     public ApiResponse<User> getUserByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return userCache.getByUsername(username, () -> userRepository.findByUsername(username))
                 .map(user -> ApiResponse.success("User found", user))
                 .orElse(ApiResponse.error("User not found"));
     }
 
     @Override
     public ApiResponse<User> createUser(User user) {
-        if (userRepository.existsByUsername(user.getUsername())) {
-            return ApiResponse.error("Username already exists");
-        }
-        
-        if (userRepository.existsByEmail(user.getEmail())) {
-            return ApiResponse.error("Email already exists");
+        // Always insert; the unique constraints decide conflicts in the same round trip
+        user.setId(null);
+        user.setVersion(null);
+        try {
+            // The conflict is caught outside the transaction, which has already been rolled back by then
+            User savedUser = transactionTemplate.execute(status -> {
+                User saved = userRepository.saveAndFlush(user);
+                recordChange(UserOutboxEvent.ChangeType.CREATED, saved);
+                return saved;
+            });
+            return ApiResponse.success("User created successfully", savedUser);
+        } catch (DataIntegrityViolationException e) {
+            String conflict = UserConflicts.conflictMessage(e);
+            if (conflict == null) {
+                throw e;
+            }
+            return ApiResponse.error(conflict);
         }
-        
-        User savedUser = userRepository.save(user);
-        return ApiResponse.success("User created successfully", savedUser);
     }
 
     @Override
+    @Transactional
     public ApiResponse<User> updateUser(Long id, User user) {
         return userRepository.findById(id)
                 .map(existingUser -> {
@@ -60,18 +216,174 @@ public class UserServiceImpl implements UserService {
                     existingUser.setIsActive(user.getIsActive());
                     existingUser.setRole(user.getRole());
                     
-                    User updatedUser = userRepository.save(existingUser);
+                    User updatedUser = userRepository.saveAndFlush(existingUser);
+                    recordChange(UserOutboxEvent.ChangeType.UPDATED, updatedUser);
+                    evictAfterCommit(updatedUser.getId(), updatedUser.getUsername());
                     return ApiResponse.success("User updated successfully", updatedUser);
                 })
                 .orElse(ApiResponse.error("User not found"));
     }
 
     @Override
+    public ApiResponse<Long> patchUser(Long id, UserPatch patch) {
+        try {
+            // The conflict is caught outside the transaction, which has already been rolled back by then
+            return transactionTemplate.execute(status -> {
+                int updated = userRepository.patch(id, patch.getVersion(),
+                        patch.getFirstName(), patch.getLastName(), patch.getEmail(),
+                        patch.getIsActive(), patch.getRole(), LocalDateTime.now());
+                if (updated == 0) {
+                    // Only the failure path pays for telling a missing user from a stale version
+                    if (!userRepository.existsById(id)) {
+                        return ApiResponse.<Long>error("User not found");
+                    }
+                    throw new OptimisticLockingFailureException("User " + id + " was modified concurrently");
+                }
+
+                // Read the patched row back in this transaction, so the event carries the new state and the username
+                User patched = userRepository.findById(id)
+                        .orElseThrow(() -> new IllegalStateException("User " + id + " vanished after its update"));
+                recordChange(UserOutboxEvent.ChangeType.UPDATED, patched);
+                evictAfterCommit(id, patched.getUsername());
+                return ApiResponse.success("User updated successfully", patched.getVersion());
+            });
+        } catch (DataIntegrityViolationException e) {
+            String conflict = UserConflicts.conflictMessage(e);
+            if (conflict == null) {
+                throw e;
+            }
+            return ApiResponse.error(conflict);
+        }
+    }
+
+    @Override
+    @Transactional
+    public ApiResponse<Integer> setUsersActive(UserSelection selection, boolean active) {
+        String invalid = validate(selection);
+        if (invalid != null) {
+            return ApiResponse.error(invalid);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int affected = selection.hasIds()
+                ? userRepository.setActiveByIds(selection.getIds(), active, now)
+                : userRepository.setActiveByFilter(selection.getRole(), selection.getIsActive(), active, now);
+        if (affected > 0) {
+            invalidate(selection, UserOutboxEvent.ChangeType.UPDATED);
+        }
+        return ApiResponse.success("Users updated successfully", affected);
+    }
+
+    @Override
+    @Transactional
+    public ApiResponse<Integer> changeUsersRole(UserSelection selection, User.UserRole role) {
+        String invalid = validate(selection);
+        if (invalid != null) {
+            return ApiResponse.error(invalid);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int affected = selection.hasIds()
+                ? userRepository.setRoleByIds(selection.getIds(), role, now)
+                : userRepository.setRoleByFilter(selection.getRole(), selection.getIsActive(), role, now);
+        if (affected > 0) {
+            invalidate(selection, UserOutboxEvent.ChangeType.UPDATED);
+        }
+        return ApiResponse.success("Users updated successfully", affected);
+    }
+
+    @Override
+    @Transactional
+    public ApiResponse<Integer> deleteUsers(UserSelection selection) {
+        String invalid = validate(selection);
+        if (invalid != null) {
+            return ApiResponse.error(invalid);
+        }
+
+        int affected = selection.hasIds()
+                ? userRepository.deleteByIds(selection.getIds())
+                : userRepository.deleteByFilter(selection.getRole(), selection.getIsActive());
+        if (affected > 0) {
+            invalidate(selection, UserOutboxEvent.ChangeType.DELETED);
+        }
+        return ApiResponse.success("Users deleted successfully", affected);
+    }
+
+    @Override
+    @Transactional
     public ApiResponse<Void> deleteUser(Long id) {
-        if (userRepository.existsById(id)) {
-            userRepository.deleteById(id);
-            return ApiResponse.success("User deleted successfully", null);
+        return userRepository.findById(id)
+                .map(existingUser -> {
+                    userRepository.delete(existingUser);
+                    userRepository.flush();
+                    outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.DELETED, id, existingUser.getUsername(), null));
+                    evictAfterCommit(id, existingUser.getUsername());
+                    return ApiResponse.<Void>success("User deleted successfully", null);
+                })
+                .orElse(ApiResponse.error("User not found"));
+    }
+
+    private String validate(UserSelection selection) {
+        if (selection.hasIds()) {
+            return selection.getIds().size() > MAX_BULK_IDS
+                    ? "At most " + MAX_BULK_IDS + " ids per request"
+                    : null;
+        }
+        return selection.hasFilter() ? null : "Either ids or a role/isActive filter is required";
+    }
+
+    /**
+     * Record the change in the outbox within the caller's transaction; UserOutboxRelay publishes it after commit.
+     * The user row is flushed first, so for one user outbox ids follow the order the changes committed in.
+     */
+    private void recordChange(UserOutboxEvent.ChangeType changeType, User user) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(UserSummary.of(user));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize user " + user.getId(), e);
+        }
+        outboxRepository.save(UserOutboxEvent.of(changeType, user.getId(), user.getUsername(), payload));
+    }
+
+    /**
+     * Evict the user locally once the change commits. Other instances evict it when the relayed
+     * outbox event reaches them.
+     */
+    private void evictAfterCommit(Long id, String username) {
+        afterCommit(() -> userCache.evict(id, username));
+    }
+
+    /**
+     * Record the bulk change as one outbox event covering the selected users rather than one per user,
+     * and evict them locally once it commits. Filter selections do not know their ids, so the event
+     * covers any user and every cached user is dropped.
+     */
+    private void invalidate(UserSelection selection, UserOutboxEvent.ChangeType changeType) {
+        List<Long> ids = selection.hasIds() ? List.copyOf(selection.getIds()) : null;
+        outboxRepository.save(UserOutboxEvent.ofUsers(changeType, ids));
+        afterCommit(() -> {
+            if (ids == null) {
+                userCache.evictAll();
+            } else {
+                ids.forEach(id -> userCache.evict(id, null));
+            }
+        });
+    }
+
+    /**
+     * Run once the current transaction commits so nobody reloads the old rows, or right away outside one
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
-        return ApiResponse.error("User not found");
     }
-} 
\ No newline at end of file
+}
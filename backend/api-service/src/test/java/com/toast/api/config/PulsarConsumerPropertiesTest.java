@@ -0,0 +1,48 @@
+package com.toast.api.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PulsarConsumerPropertiesTest {
+
+    @Test
+    void subscriptionOverridesOnlyTheSettingsItSets() {
+        PulsarConsumerProperties properties = bind(Map.of(
+                "pulsar.consumers.defaults.max-redeliveries", "5",
+                "pulsar.consumers.defaults.backoff-min", "2s",
+                "pulsar.consumers.subscriptions.orders.concurrency", "16",
+                "pulsar.consumers.subscriptions.orders.key-ordered", "true"));
+
+        PulsarConsumerProperties.Settings settings = properties.forSubscription("orders");
+
+        assertThat(settings.getConcurrency()).isEqualTo(16);
+        assertThat(settings.getKeyOrdered()).isTrue();
+        assertThat(settings.getMaxRedeliveries()).isEqualTo(5);
+        assertThat(settings.getBackoffMin()).isEqualTo(Duration.ofSeconds(2));
+        assertThat(settings.getBatchMaxMessages()).isEqualTo(100);
+        assertThat(settings.getDrainTimeout()).isEqualTo(Duration.ofSeconds(30));
+        assertThat(settings.getDedupWindow()).isNull();
+    }
+
+    @Test
+    void subscriptionCanSetASettingBackToItsBuiltInValue() {
+        PulsarConsumerProperties properties = bind(Map.of(
+                "pulsar.consumers.defaults.concurrency", "8",
+                "pulsar.consumers.subscriptions.orders.concurrency", "1"));
+
+        assertThat(properties.forSubscription("orders").getConcurrency()).isEqualTo(1);
+        assertThat(properties.forSubscription("other").getConcurrency()).isEqualTo(8);
+    }
+
+    private static PulsarConsumerProperties bind(Map<String, String> values) {
+        return new Binder(new MapConfigurationPropertySource(values))
+                .bind("pulsar.consumers", PulsarConsumerProperties.class)
+                .get();
+    }
+}
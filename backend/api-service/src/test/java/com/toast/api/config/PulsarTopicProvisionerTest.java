@@ -0,0 +1,55 @@
+package com.toast.api.config;
+
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.admin.Topics;
+import org.apache.pulsar.common.partition.PartitionedTopicMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PulsarTopicProvisionerTest {
+
+    private static final String TOPIC = "persistent://public/default/user-events";
+
+    private final PulsarAdmin pulsarAdmin = mock(PulsarAdmin.class);
+    private final Topics topics = mock(Topics.class);
+    private final PulsarTopicProperties topicProperties = new PulsarTopicProperties();
+
+    @BeforeEach
+    void setUp() {
+        when(pulsarAdmin.topics()).thenReturn(topics);
+        topicProperties.setPartitions(Map.of("user-events", 4));
+    }
+
+    @Test
+    void createsMissingPartitionedTopics() throws Exception {
+        when(topics.getPartitionedTopicMetadata(TOPIC)).thenReturn(new PartitionedTopicMetadata(0));
+        when(topics.getList("public/default")).thenReturn(List.of());
+
+        new PulsarTopicProvisioner(pulsarAdmin, topicProperties).provision(Duration.ofSeconds(5));
+
+        verify(topics).createPartitionedTopic(TOPIC, 4);
+    }
+
+    @Test
+    void stopsWaitingForAnUnresponsiveAdminAfterTheTimeout() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        when(topics.getPartitionedTopicMetadata(anyString())).thenAnswer(invocation -> {
+            never.await();
+            return new PartitionedTopicMetadata(4);
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                new PulsarTopicProvisioner(pulsarAdmin, topicProperties).provision(Duration.ofMillis(100)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.toast.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * The virtual-thread wiring from application.yml: Tomcat request handling, the Pulsar background
+ * executor and the pinning monitor, in a web context without the database and broker.
+ */
+@SpringBootTest(classes = VirtualThreadConfigTest.WebConfig.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class VirtualThreadConfigTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    @Autowired
+    private ExecutorService pulsarTaskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void requestsAreHandledOnVirtualThreads() throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + contextPath + "/thread")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("virtual");
+    }
+
+    @Test
+    void pulsarBackgroundWorkRunsOnVirtualThreads() throws Exception {
+        assertThat(pulsarTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(pulsarTaskExecutor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS))
+                .startsWith("pulsar-vt-");
+    }
+
+    @Test
+    void pinnedVirtualThreadsAreCounted() throws Exception {
+        Object lock = new Object();
+        // Sleeping inside synchronized keeps the virtual thread on its carrier, past the 20ms threshold
+        pulsarTaskExecutor.submit(() -> {
+            synchronized (lock) {
+                Thread.sleep(100);
+            }
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> meterRegistry.counter("jvm.threads.virtual.pinned").count() >= 1);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class})
+    @Import({ExecutorConfig.class, VirtualThreadPinningMonitor.class, ThreadController.class})
+    static class WebConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @RestController
+    static class ThreadController {
+
+        @GetMapping("/thread")
+        String thread() {
+            return Thread.currentThread().isVirtual() ? "virtual" : "platform";
+        }
+    }
+}
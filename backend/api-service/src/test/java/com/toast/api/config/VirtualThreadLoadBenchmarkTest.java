@@ -0,0 +1,135 @@
+package com.toast.api.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test of a request handler that blocks on a broker ack the way the Pulsar controllers block on
+ * future.get(), served by embedded Tomcat with its default 200 platform threads and with the virtual
+ * threads spring.threads.virtual.enabled switches to.
+ */
+@Slf4j
+@Tag("benchmark")
+class VirtualThreadLoadBenchmarkTest {
+
+    private static final int REQUESTS = 1_000;
+    private static final long ACK_DELAY_MILLIS = 500;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ScheduledExecutorService broker;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        broker = Executors.newSingleThreadScheduledExecutor();
+        client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.shutdownNow();
+    }
+
+    @Test
+    void virtualThreadsServeMoreBlockedRequestsAtOnce() throws Exception {
+        Result platform = load(null);
+        Result virtual = load(protocol -> protocol.setExecutor(Executors.newVirtualThreadPerTaskExecutor()));
+
+        log.info("{} requests blocked {} ms each: platform threads {} req/s with at most {} in flight, "
+                        + "virtual threads {} req/s with at most {} in flight",
+                REQUESTS, ACK_DELAY_MILLIS, Math.round(platform.perSecond()), platform.maxInFlight(),
+                Math.round(virtual.perSecond()), virtual.maxInFlight());
+        assertThat(platform.maxInFlight()).isLessThanOrEqualTo(200);
+        assertThat(virtual.maxInFlight()).isGreaterThan(REQUESTS / 2);
+    }
+
+    private Result load(TomcatProtocolHandlerCustomizer<ProtocolHandler> executor) throws Exception {
+        inFlight.set(0);
+        maxInFlight.set(0);
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if (executor != null) {
+            factory.addProtocolHandlerCustomizers(executor);
+        }
+        WebServer server = factory.getWebServer(context ->
+                context.addServlet("send", new BlockingSendServlet()).addMapping("/send"));
+        server.start();
+        try {
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/send");
+            // A first wave opens the keep-alive connections, so the timed wave measures the handlers
+            // rather than connection setup
+            wave(uri);
+            maxInFlight.set(0);
+
+            long start = System.nanoTime();
+            wave(uri);
+            return new Result(System.nanoTime() - start, maxInFlight.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void wave(URI uri) throws Exception {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertThat(response.get(60, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        }
+    }
+
+    /**
+     * Waits for a send the broker acknowledges after a fixed delay
+     */
+    private class BlockingSendServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                CompletableFuture<String> ack = new CompletableFuture<>();
+                broker.schedule(() -> ack.complete("sent"), ACK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                response.getWriter().write(ack.get());
+            } catch (InterruptedException | ExecutionException e) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private record Result(long nanos, int maxInFlight) {
+
+        double perSecond() {
+            return REQUESTS * 1e9 / nanos;
+        }
+    }
+}
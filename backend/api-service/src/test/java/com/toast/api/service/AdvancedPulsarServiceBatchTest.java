@@ -0,0 +1,128 @@
+package com.toast.api.service;
+
+import com.toast.common.dto.PublishResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batch publishes through the publish limiter against a producer that acks each send after a fixed delay.
+ */
+@Slf4j
+class AdvancedPulsarServiceBatchTest {
+
+    private static final int MAX_IN_FLIGHT = 500;
+    private static final long ACK_DELAY_MICROS = 2_000;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxObservedInFlight = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ScheduledExecutorService broker;
+    private PulsarPublishLimiter publishLimiter;
+    private AdvancedPulsarService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        broker = Executors.newScheduledThreadPool(2);
+        Producer<byte[]> producer = mock(Producer.class);
+        when(producer.sendAsync(any())).thenAnswer(invocation -> {
+            maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<MessageId> ack = new CompletableFuture<>();
+            broker.schedule(() -> {
+                inFlight.decrementAndGet();
+                ack.complete(new MessageIdImpl(1, sequence.incrementAndGet(), -1));
+            }, ACK_DELAY_MICROS, TimeUnit.MICROSECONDS);
+            return ack;
+        });
+
+        publishLimiter = new PulsarPublishLimiter(MAX_IN_FLIGHT, Duration.ofSeconds(10));
+        service = new AdvancedPulsarService();
+        ReflectionTestUtils.setField(service, "batchProducer", producer);
+        ReflectionTestUtils.setField(service, "publishLimiter", publishLimiter);
+        ReflectionTestUtils.setField(service, "batchMaxPending", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.shutdownNow();
+    }
+
+    @Test
+    void batchTakesOnePermitPerMessageAndKeepsThroughput() {
+        int messages = 50_000;
+        List<PublishResult> results = new ArrayList<>(messages);
+
+        long start = System.nanoTime();
+        long failed = service.sendBatch(payloads(messages), results::add);
+        long elapsedNanos = System.nanoTime() - start;
+
+        double perSecond = messages * 1e9 / elapsedNanos;
+        log.info("Published {} messages in {} ms ({} msg/s), at most {} in flight",
+                messages, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(perSecond), maxObservedInFlight.get());
+        assertThat(failed).isZero();
+        assertThat(results).extracting(PublishResult::index)
+                .containsExactlyElementsOf(IntStream.range(0, messages).mapToObj(Long::valueOf).toList());
+        assertThat(maxObservedInFlight.get()).isLessThanOrEqualTo(MAX_IN_FLIGHT);
+        assertThat(publishLimiter.inFlight()).isZero();
+        // Far below the 250,000 msg/s a window of 500 allows at a 2 ms ack delay, so this only catches
+        // a pipeline that has fallen back to waiting for one ack at a time (under 500 msg/s)
+        assertThat(perSecond).isGreaterThan(5_000);
+    }
+
+    @Test
+    void batchWaitsForItsOwnSendsWhenOtherPublishesHoldThePermits() {
+        List<CompletableFuture<MessageId>> held = new ArrayList<>();
+        for (int i = 0; i < MAX_IN_FLIGHT - 5; i++) {
+            held.add(publishLimiter.submit(CompletableFuture::new));
+        }
+
+        List<PublishResult> results = new ArrayList<>();
+        long failed = service.sendBatch(payloads(1_000), results::add);
+
+        assertThat(failed).isZero();
+        assertThat(results).hasSize(1_000);
+        assertThat(maxObservedInFlight.get()).isLessThanOrEqualTo(5);
+        assertThat(held).noneMatch(CompletableFuture::isDone);
+    }
+
+    @Test
+    void batchRejectsMessagesWhenNoPermitIsFree() {
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            publishLimiter.submit(CompletableFuture::new);
+        }
+
+        List<PublishResult> results = new ArrayList<>();
+        long failed = service.sendBatch(payloads(10), results::add);
+
+        assertThat(failed).isEqualTo(10);
+        assertThat(results).allSatisfy(result -> assertThat(result.error()).contains("PublishRejectedException"));
+    }
+
+    private static Iterator<String> payloads(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "message-" + i).iterator();
+    }
+}
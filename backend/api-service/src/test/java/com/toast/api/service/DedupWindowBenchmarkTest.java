@@ -0,0 +1,122 @@
+package com.toast.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Memory and time cost of the consumer dedup window at the size of a busy subscription: a five minute
+ * window holding 200,000 fingerprints.
+ */
+@Slf4j
+@Tag("benchmark")
+class DedupWindowBenchmarkTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(5);
+    private static final int ENTRIES = 200_000;
+    private static final int OPERATIONS = 2_000_000;
+
+    @Test
+    void memoryPerEntryIsFixedAndSmall() {
+        DedupWindow window = new DedupWindow(WINDOW, ENTRIES);
+        long[][] buckets = (long[][]) ReflectionTestUtils.getField(window, "buckets");
+        long tableBytes = 0;
+        for (long[] bucket : buckets) {
+            tableBytes += 16 + 8L * bucket.length;
+        }
+        double windowBytesPerEntry = (double) tableBytes / ENTRIES;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        SplittableRandom random = new SplittableRandom(1);
+        long before = usedHeap(memory);
+        Set<Long> hashSet = new HashSet<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            hashSet.add(random.nextLong());
+        }
+        double hashSetBytesPerEntry = (double) (usedHeap(memory) - before) / ENTRIES;
+
+        log.info("Dedup window: {} bytes per entry; HashSet<Long>: about {} bytes per entry ({} entries)",
+                String.format("%.1f", windowBytesPerEntry), String.format("%.1f", hashSetBytesPerEntry), hashSet.size());
+        // The tables are sized for three quarters full, rounded up to a power of two
+        assertThat(windowBytesPerEntry).isBetween(11.0, 22.0);
+    }
+
+    @Test
+    void containsAndAddOnAFullWindow() {
+        DedupWindow window = new DedupWindow(WINDOW, ENTRIES);
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < ENTRIES; i++) {
+            window.add(random.nextLong());
+        }
+
+        // Warm up, then time the consumer's check-then-remember pair; full buckets rotate early as they go
+        long duplicates = run(window, random, OPERATIONS);
+        long start = System.nanoTime();
+        duplicates += run(window, random, OPERATIONS);
+        double nanosPerMessage = (double) (System.nanoTime() - start) / OPERATIONS;
+
+        log.info("contains+add on a full window of {}: {} ns per message", ENTRIES, String.format("%.0f", nanosPerMessage));
+        assertThat(duplicates).isZero();
+        assertThat(window.size()).isLessThanOrEqualTo(ENTRIES);
+    }
+
+    @Test
+    void noFalsePositivesAcrossRandomFingerprints() {
+        DedupWindow window = new DedupWindow(WINDOW, ENTRIES);
+        SplittableRandom random = new SplittableRandom(3);
+        long[] remembered = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            remembered[i] = random.nextLong();
+            window.add(remembered[i]);
+        }
+
+        long falsePositives = 0;
+        int probes = 5_000_000;
+        for (int i = 0; i < probes; i++) {
+            if (window.contains(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        // Once every bucket is full the oldest one is cleared early, so only the newest five sixths remain
+        int kept = ENTRIES - ENTRIES / 6;
+        long found = 0;
+        for (int i = ENTRIES - kept; i < ENTRIES; i++) {
+            if (window.contains(remembered[i])) {
+                found++;
+            }
+        }
+
+        log.info("{} false positives in {} unseen fingerprints; {} of the newest {} fingerprints found",
+                falsePositives, probes, found, kept);
+        assertThat(falsePositives).isZero();
+        assertThat(found).isEqualTo(kept);
+    }
+
+    private static long run(DedupWindow window, SplittableRandom random, int operations) {
+        long duplicates = 0;
+        for (int i = 0; i < operations; i++) {
+            long fingerprint = random.nextLong();
+            if (window.contains(fingerprint)) {
+                duplicates++;
+            } else {
+                window.add(fingerprint);
+            }
+        }
+        return duplicates;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
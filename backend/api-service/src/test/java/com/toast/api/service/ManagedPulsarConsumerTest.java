@@ -0,0 +1,237 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarConsumerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Messages;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.apache.pulsar.client.util.RetryMessageUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ManagedPulsarConsumerTest {
+
+    private static final String TOPIC = "persistent://public/default/user-events";
+
+    private final BlockingQueue<Messages<String>> batches = new LinkedBlockingQueue<>();
+    private final Semaphore idle = new Semaphore(0);
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failOnce = Collections.synchronizedSet(new HashSet<>());
+
+    private ExecutorService executor;
+    private Consumer<String> consumer;
+    private ManagedPulsarConsumer<String> managed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        consumer = mock(Consumer.class);
+        when(consumer.batchReceive()).thenAnswer(invocation -> {
+            Messages<String> batch = batches.poll();
+            if (batch != null) {
+                return batch;
+            }
+            idle.release();
+            Thread.sleep(5);
+            return batch();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (managed != null) {
+            managed.stop();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void failedKeyHoldsLaterMessagesAcrossBatchesUntilRedelivered() throws Exception {
+        start(0);
+        Message<String> a = message("u1", 1, 0);
+        Message<String> b = message("u1", 2, 0);
+        Message<String> c = message("u2", 3, 0);
+        Message<String> d = message("u1", 4, 0);
+        failOnce.add("u1-1");
+
+        deliver(a, b, c);
+        assertThat(handled).containsExactlyInAnyOrder("u1-1", "u2-3");
+        verify(consumer).negativeAcknowledge(a);
+
+        // A new event for the parked key arrives before the failed one is redelivered
+        deliver(d);
+        assertThat(handled).containsExactlyInAnyOrder("u1-1", "u2-3");
+
+        deliver(message("u1", 1, 1));
+        assertThat(handled.stream().filter(value -> value.startsWith("u1")).toList())
+                .containsExactly("u1-1", "u1-1", "u1-2", "u1-4");
+        verify(consumer, times(1)).negativeAcknowledge(a);
+        verify(consumer, never()).negativeAcknowledge(b);
+        verify(consumer, never()).negativeAcknowledge(d);
+        assertThat(acknowledged()).contains(id(2), id(3), id(4));
+    }
+
+    @Test
+    void deadLetteredMessageReleasesItsKey() throws Exception {
+        start(1);
+        Message<String> b = message("u1", 2, 0);
+        failOnce.add("u1-1");
+
+        deliver(message("u1", 1, 0), b);
+        assertThat(handled).containsExactly("u1-1");
+
+        // The second failure exhausts the redeliveries, so the held message is handled right away
+        failOnce.add("u1-1");
+        deliver(message("u1", 1, 1));
+        assertThat(handled).containsExactly("u1-1", "u1-1", "u1-2");
+        verify(consumer, never()).negativeAcknowledge(b);
+        assertThat(acknowledged()).contains(id(2));
+    }
+
+    @Test
+    void retryLetterCopyReleasesTheKeyOfItsOrigin() throws Exception {
+        start(0);
+        Message<String> a = message("u1", 1, 0);
+        failOnce.add("u1-1");
+
+        deliver(a, message("u1", 2, 0));
+        assertThat(handled).containsExactly("u1-1");
+
+        // The retry-letter topic redelivers a copy with its own id, pointing back at the original
+        Message<String> copy = message("u1", 10, 0);
+        when(copy.getValue()).thenReturn("u1-1");
+        when(copy.getProperty(RetryMessageUtil.PROPERTY_ORIGIN_MESSAGE_ID)).thenReturn(id(1).toString());
+        when(copy.getProperty(RetryMessageUtil.SYSTEM_PROPERTY_RECONSUMETIMES)).thenReturn("1");
+        deliver(copy);
+        assertThat(handled).containsExactly("u1-1", "u1-1", "u1-2");
+    }
+
+    @Test
+    void dedupWindowTellsPartitionsApartForUnkeyedMessages() throws Exception {
+        start(0, Duration.ofMinutes(1));
+        // Each partition producer shares the producer name and starts its sequence ids from the same point
+        Message<String> first = unkeyed(TOPIC + "-partition-0", 0, 1, "first");
+        Message<String> second = unkeyed(TOPIC + "-partition-1", 1, 1, "second");
+
+        deliver(first, second);
+        assertThat(handled).containsExactlyInAnyOrder("first", "second");
+
+        // A redelivery of the same message on the same partition is still skipped
+        deliver(unkeyed(TOPIC + "-partition-0", 0, 1, "first"));
+        assertThat(handled).containsExactlyInAnyOrder("first", "second");
+    }
+
+    private void start(int maxRedeliveries) {
+        start(maxRedeliveries, null);
+    }
+
+    private void start(int maxRedeliveries, Duration dedupWindow) {
+        PulsarConsumerProperties.Settings settings = PulsarConsumerProperties.Settings.builtIn();
+        settings.setConcurrency(4);
+        settings.setKeyOrdered(true);
+        settings.setMaxRedeliveries(maxRedeliveries);
+        settings.setDedupWindow(dedupWindow);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        managed = new ManagedPulsarConsumer<>("test-subscription", TOPIC, null, consumer, SubscriptionType.Key_Shared,
+                this::handle, settings, executor, meterRegistry, new PulsarClientMetrics(meterRegistry));
+        managed.start();
+    }
+
+    private void handle(Message<String> msg) {
+        handled.add(msg.getValue());
+        if (failOnce.remove(msg.getValue())) {
+            throw new IllegalStateException("Handler failed for " + msg.getValue());
+        }
+    }
+
+    /**
+     * Hand a batch to the receive loop and wait until it has been processed
+     */
+    @SafeVarargs
+    private void deliver(Message<String>... messages) throws InterruptedException {
+        batches.add(batch(messages));
+        while (!batches.isEmpty()) {
+            Thread.sleep(1);
+        }
+        idle.drainPermits();
+        assertThat(idle.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MessageId> acknowledged() {
+        ArgumentCaptor<List<MessageId>> ids = ArgumentCaptor.forClass(List.class);
+        verify(consumer, atLeastOnce()).acknowledgeAsync(ids.capture());
+        return ids.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<String> message(String key, long entryId, int redeliveryCount) {
+        Message<String> msg = mock(Message.class);
+        when(msg.hasKey()).thenReturn(true);
+        when(msg.getKey()).thenReturn(key);
+        when(msg.getValue()).thenReturn(key + "-" + entryId);
+        when(msg.getMessageId()).thenReturn(id(entryId));
+        when(msg.getRedeliveryCount()).thenReturn(redeliveryCount);
+        when(msg.getTopicName()).thenReturn(TOPIC);
+        return msg;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<String> unkeyed(String topic, int partition, long sequenceId, String value) {
+        Message<String> msg = mock(Message.class);
+        when(msg.getValue()).thenReturn(value);
+        when(msg.getMessageId()).thenReturn(new MessageIdImpl(1, sequenceId, partition));
+        when(msg.getTopicName()).thenReturn(topic);
+        when(msg.getProducerName()).thenReturn("api-service-user-events");
+        when(msg.getSequenceId()).thenReturn(sequenceId);
+        return msg;
+    }
+
+    private static MessageId id(long entryId) {
+        return new MessageIdImpl(1, entryId, -1);
+    }
+
+    @SafeVarargs
+    private static Messages<String> batch(Message<String>... messages) {
+        List<Message<String>> list = List.of(messages);
+        return new Messages<>() {
+            @Override
+            public int size() {
+                return list.size();
+            }
+
+            @Override
+            public Iterator<Message<String>> iterator() {
+                return list.iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.toast.api.service;
+
+import org.apache.pulsar.client.api.HashingScheme;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageRouter;
+import org.apache.pulsar.client.impl.RoundRobinPartitionMessageRouterImpl;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The producers' Murmur3_32Hash key routing: a user id always lands on the same partition, which keeps
+ * per-user ordering, and user ids spread evenly enough that no partition becomes the bottleneck.
+ */
+class PartitionRoutingTest {
+
+    private static final int USERS = 2_000;
+
+    private final AtomicReference<String> key = new AtomicReference<>();
+    private final Message<?> msg = keyed(key);
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8, 16})
+    void routesEachUserToOnePartitionAndSpreadsUsersEvenly(int partitions) {
+        int[] partitionOfUser = route(partitions);
+        // A second router, as on another instance or after a restart, picks the same partitions
+        assertThat(route(partitions)).containsExactly(partitionOfUser);
+
+        int[] load = new int[partitions];
+        for (int partition : partitionOfUser) {
+            assertThat(partition).isBetween(0, partitions - 1);
+            load[partition]++;
+        }
+        int busiest = 0;
+        for (int partitionLoad : load) {
+            busiest = Math.max(busiest, partitionLoad);
+        }
+        assertThat((double) busiest * partitions / USERS).isLessThan(1.25);
+    }
+
+    private int[] route(int partitions) {
+        MessageRouter router = new RoundRobinPartitionMessageRouterImpl(HashingScheme.Murmur3_32Hash, 0, true, 10);
+        int[] partitionOfUser = new int[USERS];
+        for (int user = 0; user < USERS; user++) {
+            key.set(String.valueOf(100_000 + user));
+            partitionOfUser[user] = router.choosePartition(msg, () -> partitions);
+            // Routing by key does not depend on what was sent before
+            assertThat(router.choosePartition(msg, () -> partitions)).isEqualTo(partitionOfUser[user]);
+        }
+        return partitionOfUser;
+    }
+
+    /**
+     * One message whose key is whatever the reference holds, so routing thousands of keys needs one mock
+     */
+    private static Message<?> keyed(AtomicReference<String> key) {
+        Message<?> msg = mock(Message.class);
+        when(msg.hasKey()).thenReturn(true);
+        when(msg.getKey()).thenAnswer(invocation -> key.get());
+        return msg;
+    }
+}
@@ -0,0 +1,125 @@
+package com.toast.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.common.compression.CompressionCodec;
+import org.apache.pulsar.common.compression.CompressionCodecProvider;
+import org.apache.pulsar.shade.io.netty.buffer.ByteBuf;
+import org.apache.pulsar.shade.io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes on the wire and CPU time per producer codec for user-change payloads (the JSON the outbox
+ * publishes), compressed one message at a time and as batches of 1000 like batch-events.
+ */
+@Slf4j
+@Tag("benchmark")
+class PulsarCompressionBenchmarkTest {
+
+    private static final int MESSAGES = 20_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void bytesAndCpuPerCodec() throws Exception {
+        List<byte[]> payloads = payloads();
+        List<byte[]> batches = batches(payloads);
+        long rawBytes = payloads.stream().mapToLong(payload -> payload.length).sum();
+
+        log.info("{} user-change payloads, {} bytes each on average", MESSAGES, rawBytes / MESSAGES);
+        for (CompressionType type : CompressionType.values()) {
+            CompressionCodec codec = CompressionCodecProvider.getCompressionCodec(type);
+            // The first round warms the codec up and is not counted
+            Result single = null;
+            Result batched = null;
+            for (int round = 0; round <= ROUNDS; round++) {
+                single = compress(codec, payloads);
+                batched = compress(codec, batches);
+            }
+
+            log.info("{}: single {} bytes ({}%), batched {} bytes ({}%), compress {} ms/GB, decompress {} ms/GB",
+                    type, single.bytes, percent(single.bytes, rawBytes), batched.bytes, percent(batched.bytes, rawBytes),
+                    batched.encodeNanos * 1000 / rawBytes, batched.decodeNanos * 1000 / rawBytes);
+            if (type != CompressionType.NONE) {
+                // Whole batches repeat field names and values across messages, which one message alone cannot
+                assertThat(batched.bytes).isLessThan(single.bytes);
+                assertThat(batched.bytes).isLessThan(rawBytes / 2);
+            }
+        }
+    }
+
+    private static Result compress(CompressionCodec codec, List<byte[]> inputs) throws IOException {
+        long bytes = 0;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (byte[] input : inputs) {
+            ByteBuf source = Unpooled.wrappedBuffer(input);
+            long start = System.nanoTime();
+            ByteBuf encoded = codec.encode(source);
+            long encodedAt = System.nanoTime();
+            ByteBuf decoded = codec.decode(encoded, input.length);
+            decodeNanos += System.nanoTime() - encodedAt;
+            encodeNanos += encodedAt - start;
+            bytes += encoded.readableBytes();
+
+            byte[] roundTrip = new byte[decoded.readableBytes()];
+            decoded.getBytes(decoded.readerIndex(), roundTrip);
+            assertThat(roundTrip).isEqualTo(input);
+            source.release();
+            encoded.release();
+            decoded.release();
+        }
+        return new Result(bytes, encodeNanos, decodeNanos);
+    }
+
+    private static List<byte[]> payloads() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        User.UserRole[] roles = User.UserRole.values();
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<byte[]> payloads = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            UserSummary user = new UserSummary((long) 100_000 + i, "user" + i, "user" + i + "@example.com",
+                    "First" + (i % 500), "Last" + (i % 700), roles[i % roles.length], i % 10 != 0,
+                    createdAt.plusSeconds(i * 37L), (long) i % 5);
+            payloads.add(objectMapper.writeValueAsBytes(user));
+        }
+        return payloads;
+    }
+
+    /**
+     * Concatenated payloads, each prefixed with its length like the entries of a Pulsar batch
+     */
+    private static List<byte[]> batches(List<byte[]> payloads) {
+        List<byte[]> batches = new ArrayList<>();
+        for (int from = 0; from < payloads.size(); from += BATCH_SIZE) {
+            ByteBuf batch = Unpooled.buffer();
+            for (byte[] payload : payloads.subList(from, Math.min(from + BATCH_SIZE, payloads.size()))) {
+                batch.writeInt(payload.length);
+                batch.writeBytes(payload);
+            }
+            byte[] bytes = new byte[batch.readableBytes()];
+            batch.readBytes(bytes);
+            batch.release();
+            batches.add(bytes);
+        }
+        return batches;
+    }
+
+    private static long percent(long bytes, long rawBytes) {
+        return Math.round(100.0 * bytes / rawBytes);
+    }
+
+    private record Result(long bytes, long encodeNanos, long decodeNanos) {
+    }
+}
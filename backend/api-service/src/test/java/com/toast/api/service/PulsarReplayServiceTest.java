@@ -0,0 +1,41 @@
+package com.toast.api.service;
+
+import com.toast.api.config.PulsarTopicProperties;
+import com.toast.common.dto.ReplayRequest;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class PulsarReplayServiceTest {
+
+    private final PulsarClient pulsarClient = mock(PulsarClient.class);
+    private final PulsarProducerPool producerPool = mock(PulsarProducerPool.class);
+    private final ExecutorService executor = mock(ExecutorService.class);
+
+    @Test
+    void targetTopicOutsideThePublishAllowlistIsRejected() {
+        PulsarTopicProperties topicProperties = new PulsarTopicProperties();
+        topicProperties.setPartitions(Map.of("user-events", 4));
+        PulsarReplayService replayService = new PulsarReplayService(pulsarClient, mock(PulsarAdmin.class), producerPool,
+                topicProperties, executor, 500, Duration.ofMillis(200), Duration.ofSeconds(10));
+
+        ReplayRequest request = new ReplayRequest();
+        request.setTopic("user-events");
+        request.setTargetTopic("unconfigured-topic");
+
+        assertThatThrownBy(() -> replayService.start("copy", request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unconfigured-topic");
+        assertThat(replayService.getStatus("copy")).isEmpty();
+        verifyNoInteractions(pulsarClient, producerPool, executor);
+    }
+}
@@ -0,0 +1,106 @@
+package com.toast.api.service;
+
+import com.toast.common.dto.UserEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.Schema;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Serialized size and encode/decode cost of the Avro user event against the String.format text the
+ * controllers used to publish, for the example event from the docs. The text is decoded by parsing it
+ * back into a UserEvent, which is what its consumers had to do.
+ */
+@Slf4j
+@Tag("benchmark")
+class UserEventSchemaBenchmarkTest {
+
+    private static final String TEXT_FORMAT = "User event: %s - User: %s - Action: %s - Data: %s";
+    private static final Pattern TEXT_PATTERN =
+            Pattern.compile("User event: (.*) - User: (.*) - Action: (.*) - Data: (.*)", Pattern.DOTALL);
+    private static final int ITERATIONS = 200_000;
+
+    private static final UserEvent EVENT = UserEvent.builder()
+            .eventType("user.profile.update")
+            .userId("12345")
+            .action("update_profile")
+            .data("{\"name\":\"John Doe\",\"email\":\"john@example.com\"}")
+            .timestamp("2024-01-01T12:00:00Z")
+            .build();
+
+    private final Schema<UserEvent> avro = PulsarService.USER_EVENT_SCHEMA;
+
+    @Test
+    void avroAgainstFormattedText() {
+        byte[] avroBytes = avro.encode(EVENT);
+        byte[] textBytes = Schema.STRING.encode(format(EVENT));
+        assertThat(avro.decode(avroBytes)).isEqualTo(EVENT);
+        // The text never carried the timestamp
+        assertThat(parse(Schema.STRING.decode(textBytes))).isEqualTo(withoutTimestamp(EVENT));
+
+        // Warm up every path before timing it
+        time(() -> avro.encode(EVENT));
+        time(() -> avro.decode(avroBytes));
+        time(() -> Schema.STRING.encode(format(EVENT)));
+        time(() -> parse(Schema.STRING.decode(textBytes)));
+
+        double avroEncode = time(() -> avro.encode(EVENT));
+        double avroDecode = time(() -> avro.decode(avroBytes));
+        double textEncode = time(() -> Schema.STRING.encode(format(EVENT)));
+        double textDecode = time(() -> parse(Schema.STRING.decode(textBytes)));
+
+        log.info("Avro: {} bytes, encode {} ns, decode {} ns", avroBytes.length,
+                Math.round(avroEncode), Math.round(avroDecode));
+        log.info("Text: {} bytes without the timestamp, encode {} ns, decode (parse) {} ns", textBytes.length,
+                Math.round(textEncode), Math.round(textDecode));
+        // Smaller even though it also carries the timestamp
+        assertThat(avroBytes.length).isLessThan(textBytes.length);
+    }
+
+    private static String format(UserEvent event) {
+        return String.format(TEXT_FORMAT, event.getEventType(), event.getUserId(), event.getAction(), event.getData());
+    }
+
+    private static UserEvent parse(String text) {
+        Matcher matcher = TEXT_PATTERN.matcher(text);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a user event: " + text);
+        }
+        return UserEvent.builder()
+                .eventType(matcher.group(1))
+                .userId(matcher.group(2))
+                .action(matcher.group(3))
+                .data(matcher.group(4))
+                .build();
+    }
+
+    private static UserEvent withoutTimestamp(UserEvent event) {
+        return UserEvent.builder()
+                .eventType(event.getEventType())
+                .userId(event.getUserId())
+                .action(event.getAction())
+                .data(event.getData())
+                .build();
+    }
+
+    /**
+     * Average nanoseconds per call; the results are folded into a checksum so the calls are not elided
+     */
+    private static double time(Supplier<Object> operation) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += operation.get().hashCode();
+        }
+        double nanos = (double) (System.nanoTime() - start) / ITERATIONS;
+        assertThat(checksum).isNotEqualTo(Long.MIN_VALUE);
+        return nanos;
+    }
+}
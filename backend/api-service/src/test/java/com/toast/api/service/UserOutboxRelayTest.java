@@ -0,0 +1,110 @@
+package com.toast.api.service;
+
+import com.toast.api.service.impl.H2Functions;
+import com.toast.common.entity.UserOutboxEvent;
+import com.toast.common.repository.UserOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pulsar.client.api.MessageId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The relay claims a batch, publishes it with no transaction open and then deletes the acknowledged rows.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Sql(statements = H2Functions.ADVISORY_LOCK_ALIAS)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserOutboxRelayTest {
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final PulsarService pulsarService = mock(PulsarService.class);
+    private UserOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        relay = new UserOutboxRelay(outboxRepository, pulsarService, transactionManager, new SimpleMeterRegistry(),
+                500, Duration.ofMillis(200), Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void publishesClaimedEventsOutsideATransaction() {
+        outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.CREATED, 1L, "one", "{}"));
+        outboxRepository.save(UserOutboxEvent.ofUsers(UserOutboxEvent.ChangeType.UPDATED, List.of(1L, 2L)));
+        when(pulsarService.sendUserChangedEvent(any())).thenAnswer(invocation -> {
+            UserOutboxEvent event = invocation.getArgument(0);
+            assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+            assertThat(outboxRepository.findById(event.getId()).orElseThrow().getClaimedUntil()).isNotNull();
+            return CompletableFuture.completedFuture(MessageId.earliest);
+        });
+
+        assertThat(relay.relayBatch()).isEqualTo(2);
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void keepsAndReleasesAUsersEventsFromItsFirstFailure() {
+        UserOutboxEvent failed = outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.CREATED, 1L, "one", "{}"));
+        outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.CREATED, 2L, "two", "{}"));
+        UserOutboxEvent later = outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.UPDATED, 1L, "one", "{}"));
+        when(pulsarService.sendUserChangedEvent(any())).thenAnswer(invocation -> {
+            UserOutboxEvent event = invocation.getArgument(0);
+            return event.getId().equals(failed.getId())
+                    ? CompletableFuture.failedFuture(new IllegalStateException("Not acknowledged"))
+                    : CompletableFuture.completedFuture(MessageId.earliest);
+        });
+
+        assertThat(relay.relayBatch()).isZero();
+        assertThat(outboxRepository.findAll())
+                .extracting(UserOutboxEvent::getId)
+                .containsExactlyInAnyOrder(failed.getId(), later.getId());
+        assertThat(outboxRepository.existsByClaimedUntilAfter(LocalDateTime.now())).isFalse();
+    }
+
+    @Test
+    void waitsWhileAnotherRelayHoldsAClaim() {
+        UserOutboxEvent claimed = UserOutboxEvent.of(UserOutboxEvent.ChangeType.CREATED, 1L, "one", "{}");
+        claimed.setClaimedUntil(LocalDateTime.now().plusSeconds(30));
+        outboxRepository.save(claimed);
+        outboxRepository.save(UserOutboxEvent.of(UserOutboxEvent.ChangeType.CREATED, 2L, "two", "{}"));
+
+        assertThat(relay.relayBatch()).isZero();
+        verify(pulsarService, never()).sendUserChangedEvent(any());
+        assertThat(outboxRepository.count()).isEqualTo(2);
+    }
+
+    @TestConfiguration
+    @EntityScan("com.toast.common.entity")
+    static class OutboxConfig {
+    }
+}
@@ -0,0 +1,58 @@
+package com.toast.api.service.impl;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Stand-ins for Postgres functions the native user and outbox queries call, registered in H2 with CREATE ALIAS.
+ */
+public final class H2Functions {
+
+    public static final String SIMILARITY_ALIAS =
+            "CREATE ALIAS IF NOT EXISTS similarity FOR \"com.toast.api.service.impl.H2Functions.similarity\"";
+
+    public static final String ADVISORY_LOCK_ALIAS =
+            "CREATE ALIAS IF NOT EXISTS pg_try_advisory_xact_lock FOR \"com.toast.api.service.impl.H2Functions.tryAdvisoryLock\"";
+
+    private H2Functions() {
+    }
+
+    /**
+     * pg_try_advisory_xact_lock: always granted, tests relay from a single thread
+     */
+    public static boolean tryAdvisoryLock(long key) {
+        return true;
+    }
+
+    /**
+     * pg_trgm similarity: shared trigrams over all trigrams of the two strings, words padded with blanks
+     */
+    public static double similarity(String a, String b) {
+        if (a == null || b == null) {
+            return 0;
+        }
+        Set<String> left = trigrams(a);
+        Set<String> right = trigrams(b);
+        if (left.isEmpty() || right.isEmpty()) {
+            return 0;
+        }
+        Set<String> shared = new HashSet<>(left);
+        shared.retainAll(right);
+        return (double) shared.size() / (left.size() + right.size() - shared.size());
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : value.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,135 @@
+package com.toast.api.service.impl;
+
+import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.UserPatch;
+import com.toast.common.entity.User;
+import com.toast.common.repository.UserOutboxRepository;
+import com.toast.common.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent creates of the same user race on the unique constraints: one insert wins and the others get
+ * the conflict response instead of an exception. A patch onto another user's email gets the same response.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UserServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceImplCreateConflictTest {
+
+    private static final int CALLERS = 16;
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        userRepository.deleteAll();
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCreatesOfTheSameUsernameConflict() throws Exception {
+        List<ApiResponse<User>> responses = createConcurrently(i -> user("racer", "racer@example.com"));
+
+        assertThat(responses).filteredOn(ApiResponse::isSuccess).hasSize(1);
+        assertThat(responses).filteredOn(response -> !response.isSuccess())
+                .hasSize(CALLERS - 1)
+                .allSatisfy(response -> assertThat(response.getMessage()).isEqualTo("Username already exists"));
+        assertThat(userRepository.count()).isEqualTo(1);
+        assertThat(outboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCreatesOfTheSameEmailConflict() throws Exception {
+        List<ApiResponse<User>> responses = createConcurrently(i -> user("racer-" + i, "racer@example.com"));
+
+        assertThat(responses).filteredOn(ApiResponse::isSuccess).hasSize(1);
+        assertThat(responses).filteredOn(response -> !response.isSuccess())
+                .hasSize(CALLERS - 1)
+                .allSatisfy(response -> assertThat(response.getMessage()).isEqualTo("Email already exists"));
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void patchToAnotherUsersEmailConflicts() {
+        userService.createUser(user("first", "first@example.com"));
+        User second = userService.createUser(user("second", "second@example.com")).getData();
+        long outboxRows = outboxRepository.count();
+
+        UserPatch patch = new UserPatch();
+        patch.setEmail("first@example.com");
+        patch.setVersion(second.getVersion());
+        ApiResponse<Long> response = userService.patchUser(second.getId(), patch);
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Email already exists");
+        User unchanged = userRepository.findById(second.getId()).orElseThrow();
+        assertThat(unchanged.getEmail()).isEqualTo("second@example.com");
+        assertThat(unchanged.getVersion()).isEqualTo(second.getVersion());
+        assertThat(outboxRepository.count()).isEqualTo(outboxRows);
+    }
+
+    private List<ApiResponse<User>> createConcurrently(IntFunction<User> users) throws Exception {
+        CountDownLatch ready = new CountDownLatch(CALLERS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<ApiResponse<User>>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            User user = users.apply(i);
+            calls.add(executor.submit(() -> {
+                ready.countDown();
+                go.await();
+                return userService.createUser(user);
+            }));
+        }
+        ready.await();
+        go.countDown();
+
+        List<ApiResponse<User>> responses = new ArrayList<>();
+        for (Future<ApiResponse<User>> call : calls) {
+            responses.add(call.get());
+        }
+        return responses;
+    }
+
+    private static User user(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        return user;
+    }
+}
@@ -0,0 +1,136 @@
+package com.toast.api.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.service.UserDataFormat;
+import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.UserImportResult;
+import com.toast.common.dto.UserPatch;
+import com.toast.common.dto.UserSelection;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.entity.User;
+import com.toast.common.entity.UserOutboxEvent;
+import com.toast.common.repository.UserOutboxRepository;
+import com.toast.common.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every user change leaves an outbox row in its own transaction for UserOutboxRelay to publish.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({UserServiceTestConfig.class, UserImportServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceImplOutboxTest {
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private UserImportServiceImpl userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        userRepository.deleteAll();
+        User patched = new User();
+        patched.setUsername("patched");
+        patched.setEmail("patched@example.com");
+        patched.setFirstName("Old");
+        user = userRepository.save(patched);
+    }
+
+    @Test
+    void patchRecordsThePatchedUserAndEvictsItsUsername() throws Exception {
+        // Cache the user under its username before the patch
+        assertThat(userService.getUserByUsername("patched").getData().getFirstName()).isEqualTo("Old");
+
+        UserPatch patch = new UserPatch();
+        patch.setFirstName("New");
+        patch.setVersion(user.getVersion());
+        ApiResponse<Long> response = userService.patchUser(user.getId(), patch);
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getData()).isEqualTo(user.getVersion() + 1);
+        List<UserOutboxEvent> events = outboxRepository.findAll();
+        assertThat(events).singleElement().satisfies(event -> {
+            assertThat(event.getChangeType()).isEqualTo(UserOutboxEvent.ChangeType.UPDATED);
+            assertThat(event.getUserId()).isEqualTo(user.getId());
+            assertThat(event.getUsername()).isEqualTo("patched");
+        });
+        UserSummary payload = objectMapper.readValue(events.get(0).getPayload(), UserSummary.class);
+        assertThat(payload.firstName()).isEqualTo("New");
+        assertThat(payload.version()).isEqualTo(user.getVersion() + 1);
+        assertThat(userService.getUserByUsername("patched").getData().getFirstName()).isEqualTo("New");
+    }
+
+    @Test
+    void bulkChangeByIdsRecordsOneEventListingTheIds() {
+        UserSelection selection = new UserSelection();
+        selection.setIds(List.of(user.getId()));
+
+        assertThat(userService.setUsersActive(selection, false).getData()).isEqualTo(1);
+
+        assertThat(outboxRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.coversManyUsers()).isTrue();
+            assertThat(event.getChangeType()).isEqualTo(UserOutboxEvent.ChangeType.UPDATED);
+            assertThat(event.getPayload()).isEqualTo(String.valueOf(user.getId()));
+        });
+    }
+
+    @Test
+    void bulkDeleteByFilterRecordsOneEventForAnyUser() {
+        UserSelection selection = new UserSelection();
+        selection.setRole(User.UserRole.USER);
+
+        assertThat(userService.deleteUsers(selection).getData()).isEqualTo(1);
+
+        assertThat(outboxRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.coversManyUsers()).isTrue();
+            assertThat(event.getChangeType()).isEqualTo(UserOutboxEvent.ChangeType.DELETED);
+            assertThat(event.getPayload()).isNull();
+        });
+    }
+
+    @Test
+    void importRecordsTheCreatedUsers() throws Exception {
+        String csv = "username,email\nimported-1,imported-1@example.com\nimported-2,imported-2@example.com\n";
+        List<UserImportResult> results = new ArrayList<>();
+
+        userImportService.importUsers(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                UserDataFormat.CSV, results::add);
+
+        assertThat(results).allMatch(UserImportResult::success).hasSize(2);
+        assertThat(outboxRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.coversManyUsers()).isTrue();
+            assertThat(event.getChangeType()).isEqualTo(UserOutboxEvent.ChangeType.CREATED);
+            assertThat(event.getPayload()).isEqualTo(results.get(0).id() + "," + results.get(1).id());
+        });
+    }
+}
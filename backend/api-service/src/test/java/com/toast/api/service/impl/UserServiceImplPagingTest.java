@@ -0,0 +1,103 @@
+package com.toast.api.service.impl;
+
+import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.CursorPage;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.entity.User;
+import com.toast.common.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Walks every filter combination page by page. Users share creation times in groups of three, so the
+ * cursor has to break ties on id.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UserServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceImplPagingTest {
+
+    private static final int USERS = 30;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<UserSummary> created = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        created.clear();
+        User.UserRole[] roles = User.UserRole.values();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("pager-" + i);
+            user.setEmail("pager-" + i + "@example.com");
+            user.setRole(roles[i % roles.length]);
+            user.setIsActive(i % 2 == 0);
+            user = userRepository.save(user);
+            LocalDateTime createdAt = START.plusMinutes(i / 3);
+            jdbcTemplate.update("UPDATE users SET created_at = ? WHERE id = ?", createdAt, user.getId());
+            created.add(new UserSummary(user.getId(), user.getUsername(), user.getEmail(), null, null,
+                    user.getRole(), user.getIsActive(), createdAt, user.getVersion()));
+        }
+    }
+
+    static Stream<Arguments> filters() {
+        return Stream.of(
+                Arguments.of(null, null),
+                Arguments.of(User.UserRole.ADMIN, null),
+                Arguments.of(null, true),
+                Arguments.of(User.UserRole.USER, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("filters")
+    void pagesThroughEveryMatchingUserNewestFirst(User.UserRole role, Boolean isActive) {
+        List<Long> expected = created.stream()
+                .filter(user -> role == null || user.role() == role)
+                .filter(user -> isActive == null || user.isActive().equals(isActive))
+                .sorted(Comparator.comparing(UserSummary::createdAt).thenComparing(UserSummary::id).reversed())
+                .map(UserSummary::id)
+                .toList();
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            ApiResponse<CursorPage<UserSummary>> page = userService.getUsers(cursor, 4, role, isActive);
+            assertThat(page.isSuccess()).isTrue();
+            assertThat(page.getData().getItems()).hasSizeLessThanOrEqualTo(4);
+            page.getData().getItems().forEach(user -> paged.add(user.id()));
+            cursor = page.getData().getNextCursor();
+        } while (cursor != null);
+
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+}
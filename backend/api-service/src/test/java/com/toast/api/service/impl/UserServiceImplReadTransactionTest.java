@@ -0,0 +1,142 @@
+package com.toast.api.service.impl;
+
+import com.toast.common.dto.UserVersion;
+import com.toast.common.entity.User;
+import com.toast.common.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cached user lookups only open a transaction on a cache miss. The timing of cache hits with and without
+ * the read-only transaction the service methods used to open around the cache is logged, not asserted.
+ */
+@Slf4j
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UserServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceImplReadTransactionTest {
+
+    private static final int LOOKUPS = 20_000;
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        User reader = new User();
+        reader.setUsername("reader");
+        reader.setEmail("reader@example.com");
+        user = userRepository.save(reader);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void onlyCacheMissesOpenATransaction() {
+        // The id and the username are cached separately, so each misses once
+        assertThat(userService.getUserById(user.getId()).isSuccess()).isTrue();
+        assertThat(userService.getUserByUsername("reader").isSuccess()).isTrue();
+        assertThat(statistics.getTransactionCount()).isEqualTo(2);
+
+        statistics.clear();
+        for (int i = 0; i < 100; i++) {
+            userService.getUserById(user.getId());
+            userService.getUserByUsername("reader");
+        }
+        assertThat(statistics.getTransactionCount()).isZero();
+        assertThat(statistics.getSessionOpenCount()).isZero();
+    }
+
+    @Test
+    void cachedUserBehindTheCurrentVersionIsReloaded() {
+        assertThat(userService.getUserById(user.getId()).getData().getFirstName()).isNull();
+
+        // Changed without going through the service, so the cache still holds the old version
+        User changed = userRepository.findById(user.getId()).orElseThrow();
+        changed.setFirstName("Changed");
+        changed = userRepository.save(changed);
+
+        User current = userService.getUserById(user.getId(), changed.getVersion()).getData();
+        assertThat(current.getVersion()).isEqualTo(changed.getVersion());
+        assertThat(current.getFirstName()).isEqualTo("Changed");
+    }
+
+    @Test
+    void usernameResolvesToTheCurrentVersionOfACachedUser() {
+        assertThat(userService.getUserByUsername("reader").getData().getFirstName()).isNull();
+
+        User changed = userRepository.findById(user.getId()).orElseThrow();
+        changed.setFirstName("Changed");
+        changed = userRepository.save(changed);
+
+        UserVersion version = userService.getUserVersionByUsername("reader").getData();
+        assertThat(version).isEqualTo(new UserVersion(user.getId(), changed.getVersion()));
+        assertThat(userService.getUserById(version.id(), version.version()).getData().getFirstName()).isEqualTo("Changed");
+        assertThat(userService.getUserVersionByUsername("nobody").isSuccess()).isFalse();
+    }
+
+    @Test
+    void cacheHitsWithoutTheReadOnlyTransaction() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        userService.getUserById(user.getId());
+
+        // Warm up both paths before timing them
+        for (int i = 0; i < LOOKUPS; i++) {
+            readOnly.execute(status -> userService.getUserById(user.getId()));
+            userService.getUserById(user.getId());
+        }
+
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            readOnly.execute(status -> userService.getUserById(user.getId()));
+        }
+        long before = System.nanoTime() - start;
+        long transactionsBefore = statistics.getTransactionCount();
+
+        statistics.clear();
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            userService.getUserById(user.getId());
+        }
+        long after = System.nanoTime() - start;
+        long transactionsAfter = statistics.getTransactionCount();
+
+        log.info("{} cache hits: {} ns/lookup and {} transactions inside a read-only transaction, "
+                        + "{} ns/lookup and {} transactions without",
+                LOOKUPS, before / LOOKUPS, transactionsBefore, after / LOOKUPS, transactionsAfter);
+        assertThat(transactionsBefore).isEqualTo(LOOKUPS);
+        assertThat(transactionsAfter).isZero();
+    }
+}
@@ -0,0 +1,78 @@
+package com.toast.api.service.impl;
+
+import com.toast.common.dto.ApiResponse;
+import com.toast.common.dto.CursorPage;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.entity.User;
+import com.toast.common.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UserServiceTestConfig.class)
+@Sql(statements = H2Functions.SIMILARITY_ALIAS)
+class UserServiceImplSearchTest {
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void ranksUsernamePrefixMatchesFirstAndReturnsSummaries() {
+        save("malice", "m@example.com", "Mal", "Ice", User.UserRole.USER);
+        save("alice", "alice@example.com", "Alice", "Smith", User.UserRole.ADMIN);
+        save("bob", "bob@example.com", "Alice", "Jones", User.UserRole.USER);
+        save("carol", "carol@example.com", "Carol", "White", User.UserRole.USER);
+
+        ApiResponse<CursorPage<UserSummary>> response = userService.searchUsers("alice", null, 10);
+
+        assertThat(response.isSuccess()).isTrue();
+        List<UserSummary> users = response.getData().getItems();
+        assertThat(users).extracting(UserSummary::username).containsExactlyInAnyOrder("alice", "malice", "bob");
+        assertThat(users.get(0).username()).isEqualTo("alice");
+        assertThat(users.get(0).role()).isEqualTo(User.UserRole.ADMIN);
+        assertThat(users.get(0).createdAt()).isNotNull();
+        assertThat(users.get(0).version()).isNotNull();
+    }
+
+    @Test
+    void ranksOnlyABoundedNumberOfCandidatesPerColumn() {
+        IntStream.range(0, 20).forEach(i ->
+                save("member-" + i, "member-" + i + "@example.com", null, null, User.UserRole.USER));
+
+        List<UserSummary> users = userRepository.search("member", "%member%", "member%", 2, 50, 0);
+
+        // Four candidate subqueries of at most 2 ids each
+        assertThat(users).hasSizeBetween(2, 8);
+    }
+
+    private void save(String username, String email, String firstName, String lastName, User.UserRole role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setRole(role);
+        userRepository.save(user);
+    }
+}
@@ -0,0 +1,36 @@
+package com.toast.api.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toast.api.cache.UserCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+
+/**
+ * Wires UserServiceImpl over the JPA slice.
+ */
+@TestConfiguration
+@EntityScan("com.toast.common.entity")
+@Import(UserServiceImpl.class)
+class UserServiceTestConfig {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    UserCache userCache(MeterRegistry meterRegistry) {
+        return new UserCache(meterRegistry, 10_000, Duration.ofMinutes(10));
+    }
+
+    @Bean
+    ObjectMapper objectMapper() {
+        return new ObjectMapper().findAndRegisterModules();
+    }
+}
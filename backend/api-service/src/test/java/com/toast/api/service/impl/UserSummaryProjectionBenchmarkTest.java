@@ -0,0 +1,121 @@
+package com.toast.api.service.impl;
+
+import com.sun.management.ThreadMXBean;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.entity.User;
+import com.toast.common.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation and latency of the first user list page read as UserSummary projections (findFirstPage)
+ * against the same rows read as managed User entities and mapped afterwards, the way the list endpoints
+ * used to read them.
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UserServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserSummaryProjectionBenchmarkTest {
+
+    private static final int USERS = 2_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int ITERATIONS = 500;
+    private static final String ENTITY_PAGE = "SELECT u FROM User u ORDER BY u.createdAt DESC, u.id DESC";
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        userRepository.saveAll(IntStream.range(0, USERS).mapToObj(i -> {
+            User user = new User();
+            user.setUsername("user-" + i);
+            user.setEmail("user-" + i + "@example.com");
+            user.setFirstName("First" + i);
+            user.setLastName("Last" + i);
+            return user;
+        }).toList());
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void projectionAgainstEntities() {
+        Supplier<List<UserSummary>> projection = () -> transaction.execute(status ->
+                userRepository.findFirstPage(Limit.of(PAGE_SIZE)));
+        Supplier<List<UserSummary>> entities = () -> transaction.execute(status ->
+                entityManager.createQuery(ENTITY_PAGE, User.class).setMaxResults(PAGE_SIZE).getResultList()
+                        .stream().map(UserSummary::of).toList());
+        assertThat(projection.get()).isEqualTo(entities.get());
+
+        // Warm up both paths before measuring them
+        measure(projection);
+        measure(entities);
+
+        Measurement summaries = measure(projection);
+        Measurement users = measure(entities);
+
+        log.info("{} rows per page over {} users: projection {} bytes and {} us per page, "
+                        + "entities {} bytes and {} us per page",
+                PAGE_SIZE, USERS, summaries.bytesPerPage(), summaries.microsPerPage(),
+                users.bytesPerPage(), users.microsPerPage());
+        // Managed entities also carry a load snapshot and persistence-context entries per row
+        assertThat(summaries.bytesPerPage()).isLessThan(users.bytesPerPage());
+    }
+
+    private Measurement measure(Supplier<List<UserSummary>> page) {
+        long threadId = Thread.currentThread().threadId();
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertThat(page.get()).hasSize(PAGE_SIZE);
+        }
+        long nanos = System.nanoTime() - start;
+        return new Measurement(threads.getThreadAllocatedBytes(threadId) - allocated, nanos);
+    }
+
+    private record Measurement(long bytes, long nanos) {
+
+        long bytesPerPage() {
+            return bytes / ITERATIONS;
+        }
+
+        long microsPerPage() {
+            return nanos / ITERATIONS / 1_000;
+        }
+    }
+}
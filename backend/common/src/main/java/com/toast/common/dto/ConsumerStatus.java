@@ -0,0 +1,14 @@
+package com.toast.common.dto;
+
+/**
+ * Snapshot of a managed Pulsar consumer: its lifecycle state and processing totals.
+ * lagMillis is the time between publish and handling of the most recently handled message.
+ */
+public record ConsumerStatus(String name,
+                             String topic,
+                             String state,
+                             int concurrency,
+                             long acked,
+                             long failed,
+                             long lagMillis) {
+}
@@ -0,0 +1,31 @@
+package com.toast.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPage<T> {
+
+    private List<T> items;
+    private int size;
+    private boolean hasMore;
+    private String nextCursor;
+
+    public static <T> CursorPage<T> of(List<T> items, String nextCursor) {
+        return CursorPage.<T>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(nextCursor != null)
+                .nextCursor(nextCursor)
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.toast.common.dto;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position used for cursor pagination.
+ * Encodes the (createdAt, id) of the last row returned so the next page
+ * can seek directly to it instead of skipping with an offset.
+ */
+public record PageCursor(LocalDateTime createdAt, Long id) {
+
+    private static final int ENCODED_LENGTH = Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH);
+        buffer.putLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(createdAt.getNano());
+        buffer.putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length != ENCODED_LENGTH) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+            return new PageCursor(createdAt, buffer.getLong());
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.toast.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one message in a batch publish: its broker-assigned id, or the error.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PublishResult(long index, String messageId, String error) {
+
+    public static PublishResult sent(long index, String messageId) {
+        return new PublishResult(index, messageId, null);
+    }
+
+    public static PublishResult failed(long index, String error) {
+        return new PublishResult(index, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
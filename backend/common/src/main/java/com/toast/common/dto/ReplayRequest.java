@@ -0,0 +1,33 @@
+package com.toast.common.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Replay of a topic from a publish time or message id. Without a target topic messages are only counted.
+ * With resume set, each partition continues from the checkpoint left by an earlier run with the same id, up
+ * to the end that run recorded; the start position only applies to partitions that have no checkpoint.
+ */
+@Data
+public class ReplayRequest {
+
+    @NotBlank
+    private String topic;
+
+    private String targetTopic;
+
+    private Instant fromPublishTime;
+
+    /** "ledgerId:entryId:partitionIndex", as returned by the publish endpoints; non-partitioned topics only */
+    private String fromMessageId;
+
+    private Instant toPublishTime;
+
+    @Positive
+    private Integer maxMessagesPerSecond;
+
+    private boolean resume;
+}
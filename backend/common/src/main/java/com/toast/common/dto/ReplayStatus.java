@@ -0,0 +1,20 @@
+package com.toast.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * Progress of a topic replay. state is RUNNING, COMPLETED, CANCELLED or FAILED.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReplayStatus(String id,
+                           String topic,
+                           String targetTopic,
+                           String state,
+                           int partitions,
+                           long replayed,
+                           Instant startedAt,
+                           Instant finishedAt,
+                           String error) {
+}
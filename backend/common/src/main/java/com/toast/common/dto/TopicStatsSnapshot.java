@@ -0,0 +1,29 @@
+package com.toast.common.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Broker-side statistics of a topic, summed over its partitions, as of sampledAt.
+ * Rates are per second, throughput and sizes in bytes. A subscription's lagMillis is the age of
+ * the oldest unacknowledged message, 0 when it has no backlog.
+ */
+public record TopicStatsSnapshot(String topic,
+                                 int partitions,
+                                 double msgRateIn,
+                                 double msgRateOut,
+                                 double msgThroughputIn,
+                                 double msgThroughputOut,
+                                 long storageSize,
+                                 long backlogSize,
+                                 Map<String, Subscription> subscriptions,
+                                 Instant sampledAt) {
+
+    public record Subscription(long msgBacklog,
+                               double msgRateOut,
+                               double msgRateRedeliver,
+                               long unackedMessages,
+                               int consumers,
+                               long lagMillis) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.toast.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * User activity event, published with an Avro schema derived from this class.
+ * Every field is nullable in the schema. To keep old and new producers and consumers
+ * compatible, only add new fields; never rename, remove or change the type of an existing one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserEvent {
+
+    private String eventType;
+    private String userId;
+    private String action;
+    private String data;
+    private String timestamp;
+}
@@ -0,0 +1,19 @@
+package com.toast.common.dto;
+
+import com.toast.common.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat, unmanaged view of a user row used by the streaming export.
+ */
+public record UserExportRow(Long id,
+                            String username,
+                            String email,
+                            String firstName,
+                            String lastName,
+                            Boolean isActive,
+                            User.UserRole role,
+                            LocalDateTime createdAt,
+                            LocalDateTime updatedAt) {
+}
@@ -0,0 +1,18 @@
+package com.toast.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of a single row in a bulk user import.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserImportResult(long line, boolean success, Long id, String message) {
+
+    public static UserImportResult created(long line, Long id) {
+        return new UserImportResult(line, true, id, null);
+    }
+
+    public static UserImportResult failed(long line, String message) {
+        return new UserImportResult(line, false, null, message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.toast.common.dto;
+
+import com.toast.common.entity.User;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * Partial user update. Fields left null are not changed; version must match the stored row.
+ */
+@Data
+public class UserPatch {
+
+    private String firstName;
+    private String lastName;
+    private String email;
+    private Boolean isActive;
+    private User.UserRole role;
+
+    @NotNull
+    private Long version;
+}
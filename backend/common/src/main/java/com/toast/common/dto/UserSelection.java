@@ -0,0 +1,25 @@
+package com.toast.common.dto;
+
+import com.toast.common.entity.User;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Users targeted by a bulk operation: either an explicit id list or a role/active filter.
+ */
+@Data
+public class UserSelection {
+
+    private List<Long> ids;
+    private User.UserRole role;
+    private Boolean isActive;
+
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+
+    public boolean hasFilter() {
+        return role != null || isActive != null;
+    }
+}
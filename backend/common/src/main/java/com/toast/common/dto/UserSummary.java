@@ -0,0 +1,26 @@
+package com.toast.common.dto;
+
+import com.toast.common.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of the user columns shown in listings.
+ * Loaded directly by query so Hibernate never tracks or snapshots it.
+ */
+public record UserSummary(Long id,
+                          String username,
+                          String email,
+                          String firstName,
+                          String lastName,
+                          User.UserRole role,
+                          Boolean isActive,
+                          LocalDateTime createdAt,
+                          Long version) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getEmail(),
+                user.getFirstName(), user.getLastName(), user.getRole(), user.getIsActive(),
+                user.getCreatedAt(), user.getVersion());
+    }
+}
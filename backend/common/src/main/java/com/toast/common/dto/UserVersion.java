@@ -0,0 +1,7 @@
+package com.toast.common.dto;
+
+/**
+ * Id and current version of a user, enough to revalidate or tag it without loading the row.
+ */
+public record UserVersion(Long id, Long version) {
+}
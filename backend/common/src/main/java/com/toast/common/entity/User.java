@@ -1,19 +1,85 @@
 package com.toast.common.entity;
 
+import com.toast.common.dto.UserSummary;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.time.LocalDateTime;
+
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email")
+}, indexes = {
+        // One index per keyset filter combination, each ending in the (created_at, id) sort order
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_users_role_created_at_id", columnList = "role, created_at, id"),
+        @Index(name = "idx_users_active_created_at_id", columnList = "is_active, created_at, id"),
+        @Index(name = "idx_users_role_active_created_at_id", columnList = "role, is_active, created_at, id")
+})
+@SqlResultSetMapping(name = User.SUMMARY_MAPPING, classes = @ConstructorResult(targetClass = UserSummary.class, columns = {
+        @ColumnResult(name = "id", type = Long.class),
+        @ColumnResult(name = "username", type = String.class),
+        @ColumnResult(name = "email", type = String.class),
+        @ColumnResult(name = "first_name", type = String.class),
+        @ColumnResult(name = "last_name", type = String.class),
+        @ColumnResult(name = "role", type = User.UserRole.class),
+        @ColumnResult(name = "is_active", type = Boolean.class),
+        @ColumnResult(name = "created_at", type = LocalDateTime.class),
+        @ColumnResult(name = "version", type = Long.class)
+}))
+// Substring search over username, email and full name, served by the pg_trgm GIN indexes. Each column
+// contributes its :candidates most similar matches, so only a bounded set is ranked however common the
+// term is, and the same set is chosen on every page. Username prefix matches are collected separately
+// and rank first, then trigram similarity.
+@NamedNativeQuery(name = "User.search", resultSetMapping = User.SUMMARY_MAPPING, query =
+        "SELECT u.id, u.username, u.email, u.first_name, u.last_name, u.role, u.is_active, u.created_at, u.version " +
+        "FROM users u JOIN (" +
+        "(SELECT id FROM users WHERE username ILIKE :prefix " +
+        "ORDER BY similarity(username, :query) DESC, id LIMIT :candidates) " +
+        "UNION (SELECT id FROM users WHERE username ILIKE :pattern " +
+        "ORDER BY similarity(username, :query) DESC, id LIMIT :candidates) " +
+        "UNION (SELECT id FROM users WHERE email ILIKE :pattern " +
+        "ORDER BY similarity(email, :query) DESC, id LIMIT :candidates) " +
+        "UNION (SELECT id FROM users " +
+        "WHERE (coalesce(first_name, '') || ' ' || coalesce(last_name, '')) ILIKE :pattern " +
+        "ORDER BY similarity(coalesce(first_name, '') || ' ' || coalesce(last_name, ''), :query) DESC, id " +
+        "LIMIT :candidates)" +
+        ") c ON c.id = u.id " +
+        "ORDER BY (u.username ILIKE :prefix) DESC, " +
+        "greatest(similarity(u.username, :query), similarity(u.email, :query), " +
+        "similarity(coalesce(u.first_name, '') || ' ' || coalesce(u.last_name, ''), :query)) DESC, " +
+        "u.id " +
+        "LIMIT :limit OFFSET :offset")
+// Keyset pages after a cursor, newest first. Native so the cursor is a row-value comparison
+// matching the (created_at, id) index order; HQL has no tuple less-than
+@NamedNativeQuery(name = "User.findPageAfter", resultSetMapping = User.SUMMARY_MAPPING, query =
+        User.PAGE_SELECT + "WHERE " + User.PAGE_AFTER + User.PAGE_ORDER)
+@NamedNativeQuery(name = "User.findPageByRoleAfter", resultSetMapping = User.SUMMARY_MAPPING, query =
+        User.PAGE_SELECT + "WHERE role = :role AND " + User.PAGE_AFTER + User.PAGE_ORDER)
+@NamedNativeQuery(name = "User.findPageByActiveAfter", resultSetMapping = User.SUMMARY_MAPPING, query =
+        User.PAGE_SELECT + "WHERE is_active = :isActive AND " + User.PAGE_AFTER + User.PAGE_ORDER)
+@NamedNativeQuery(name = "User.findPageByRoleAndActiveAfter", resultSetMapping = User.SUMMARY_MAPPING, query =
+        User.PAGE_SELECT + "WHERE role = :role AND is_active = :isActive AND " + User.PAGE_AFTER + User.PAGE_ORDER)
 @EqualsAndHashCode(callSuper = true)
 public class User extends BaseEntity {
 
-    @Column(name = "username", unique = true, nullable = false)
+    public static final String SUMMARY_MAPPING = "UserSummary";
+
+    static final String PAGE_SELECT =
+            "SELECT id, username, email, first_name, last_name, role, is_active, created_at, version FROM users ";
+    static final String PAGE_AFTER = "(created_at, id) < (:createdAt, :id) ";
+    static final String PAGE_ORDER = "ORDER BY created_at DESC, id DESC";
+
+    public static final String USERNAME_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
+    @Column(name = "username", nullable = false)
     private String username;
 
-    @Column(name = "email", unique = true, nullable = false)
+    @Column(name = "email", nullable = false)
     private String email;
 
     @Column(name = "first_name")
@@ -0,0 +1,75 @@
+package com.toast.common.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * A user change waiting to be published to user-events. Written in the same transaction as the change
+ * and deleted once the broker has acknowledged it. Bulk changes write one event covering many users,
+ * with no user id and the comma-separated ids as payload, or no payload when any user may have changed.
+ */
+@Data
+@Entity
+@Table(name = "user_outbox")
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class UserOutboxEvent {
+
+    // Identity ids are assigned at insert time, so for one user they follow the order the changes committed in
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "username")
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false)
+    private ChangeType changeType;
+
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Set while a relay publishes the event; other relays wait until it passes or is cleared
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static UserOutboxEvent of(ChangeType changeType, Long userId, String username, String payload) {
+        UserOutboxEvent event = new UserOutboxEvent();
+        event.setChangeType(changeType);
+        event.setUserId(userId);
+        event.setUsername(username);
+        event.setPayload(payload);
+        event.setCreatedAt(LocalDateTime.now());
+        return event;
+    }
+
+    /**
+     * One event for a change to many users. A null id collection means any user may have changed.
+     */
+    public static UserOutboxEvent ofUsers(ChangeType changeType, Collection<Long> userIds) {
+        String payload = userIds == null
+                ? null
+                : userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return of(changeType, null, null, payload);
+    }
+
+    public boolean coversManyUsers() {
+        return userId == null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.toast.common.repository;
+
+import com.toast.common.entity.UserOutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserOutboxRepository extends JpaRepository<UserOutboxEvent, Long> {
+
+    @Query("SELECT e FROM UserOutboxEvent e ORDER BY e.id")
+    List<UserOutboxEvent> findOldest(Limit limit);
+
+    /**
+     * Whether a relay holds a claim on events it may still be publishing
+     */
+    boolean existsByClaimedUntilAfter(LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE UserOutboxEvent e SET e.claimedUntil = :until WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE UserOutboxEvent e SET e.claimedUntil = NULL WHERE e.id IN :ids")
+    int release(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM UserOutboxEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Take a transaction-scoped advisory lock without waiting. Returns false if another transaction holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+}
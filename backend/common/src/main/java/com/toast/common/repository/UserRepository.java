@@ -1,14 +1,35 @@
 package com.toast.common.repository;
 
+import com.toast.common.dto.UserExportRow;
+import com.toast.common.dto.UserSummary;
+import com.toast.common.dto.UserVersion;
 import com.toast.common.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    // Constructor expression shared by the UserSummary projections
+    String SUMMARY = "new com.toast.common.dto.UserSummary(" +
+            "u.id, u.username, u.email, u.firstName, u.lastName, u.role, u.isActive, u.createdAt, u.version)";
     
+    // Declared queries get no transaction of their own; the single-row reads run read-only
+    @Transactional(readOnly = true)
     Optional<User> findByUsername(String username);
     
     Optional<User> findByEmail(String email);
@@ -16,4 +37,149 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
-} 
\ No newline at end of file
+
+    @Transactional(readOnly = true)
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.toast.common.dto.UserVersion(u.id, u.version) FROM User u WHERE u.username = :username")
+    Optional<UserVersion> findVersionByUsername(@Param("username") String username);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT " + SUMMARY + " FROM User u WHERE u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    // Keyset pages, newest first, with one query per filter combination so each plan matches its filters.
+    // The pages after a cursor are the User.find*After named native queries; role is passed by name there
+
+    @Query("SELECT " + SUMMARY + " FROM User u ORDER BY u.createdAt DESC, u.id DESC")
+    List<UserSummary> findFirstPage(Limit limit);
+
+    @Query(name = "User.findPageAfter", nativeQuery = true)
+    List<UserSummary> findPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Limit limit);
+
+    @Query("SELECT " + SUMMARY + " FROM User u WHERE u.role = :role ORDER BY u.createdAt DESC, u.id DESC")
+    List<UserSummary> findFirstPageByRole(@Param("role") User.UserRole role, Limit limit);
+
+    @Query(name = "User.findPageByRoleAfter", nativeQuery = true)
+    List<UserSummary> findPageByRoleAfter(@Param("role") String role,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id,
+                                          Limit limit);
+
+    @Query("SELECT " + SUMMARY + " FROM User u WHERE u.isActive = :isActive ORDER BY u.createdAt DESC, u.id DESC")
+    List<UserSummary> findFirstPageByActive(@Param("isActive") Boolean isActive, Limit limit);
+
+    @Query(name = "User.findPageByActiveAfter", nativeQuery = true)
+    List<UserSummary> findPageByActiveAfter(@Param("isActive") Boolean isActive,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Limit limit);
+
+    @Query("SELECT " + SUMMARY + " FROM User u " +
+           "WHERE u.role = :role AND u.isActive = :isActive " +
+           "ORDER BY u.createdAt DESC, u.id DESC")
+    List<UserSummary> findFirstPageByRoleAndActive(@Param("role") User.UserRole role,
+                                                   @Param("isActive") Boolean isActive,
+                                                   Limit limit);
+
+    @Query(name = "User.findPageByRoleAndActiveAfter", nativeQuery = true)
+    List<UserSummary> findPageByRoleAndActiveAfter(@Param("role") String role,
+                                                   @Param("isActive") Boolean isActive,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Limit limit);
+
+    /**
+     * Apply the non-null fields in one conditional UPDATE. Returns 0 if the id is unknown or the version is stale.
+     * Clears the persistence context, so a later find in the same transaction reads the patched row.
+     * CASE rather than COALESCE, which Hibernate 6.3 can not type in a SET clause when the parameter comes first.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET " +
+           "u.firstName = CASE WHEN :firstName IS NULL THEN u.firstName ELSE :firstName END, " +
+           "u.lastName = CASE WHEN :lastName IS NULL THEN u.lastName ELSE :lastName END, " +
+           "u.email = CASE WHEN :email IS NULL THEN u.email ELSE :email END, " +
+           "u.isActive = CASE WHEN :isActive IS NULL THEN u.isActive ELSE :isActive END, " +
+           "u.role = CASE WHEN :role IS NULL THEN u.role ELSE :role END, " +
+           "u.updatedAt = :updatedAt, " +
+           "u.version = u.version + 1 " +
+           "WHERE u.id = :id AND u.version = :version")
+    int patch(@Param("id") Long id,
+              @Param("version") Long version,
+              @Param("firstName") String firstName,
+              @Param("lastName") String lastName,
+              @Param("email") String email,
+              @Param("isActive") Boolean isActive,
+              @Param("role") User.UserRole role,
+              @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Ranked substring search, defined as the User.search named query. Ranks the candidates most similar matches
+     * per column. Marked native so the query's UserSummary result mapping is used as is.
+     */
+    @Query(name = "User.search", nativeQuery = true)
+    List<UserSummary> search(@Param("query") String query,
+                             @Param("pattern") String pattern,
+                             @Param("prefix") String prefix,
+                             @Param("candidates") int candidates,
+                             @Param("limit") int limit,
+                             @Param("offset") int offset);
+
+    @Modifying
+    @Query("UPDATE User u SET u.isActive = :active, u.updatedAt = :updatedAt, u.version = u.version + 1 " +
+           "WHERE u.id IN :ids AND (u.isActive IS NULL OR u.isActive <> :active)")
+    int setActiveByIds(@Param("ids") Collection<Long> ids,
+                       @Param("active") boolean active,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE User u SET u.isActive = :active, u.updatedAt = :updatedAt, u.version = u.version + 1 " +
+           "WHERE (:role IS NULL OR u.role = :role) " +
+           "AND (:isActive IS NULL OR u.isActive = :isActive) " +
+           "AND (u.isActive IS NULL OR u.isActive <> :active)")
+    int setActiveByFilter(@Param("role") User.UserRole role,
+                          @Param("isActive") Boolean isActive,
+                          @Param("active") boolean active,
+                          @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE User u SET u.role = :newRole, u.updatedAt = :updatedAt, u.version = u.version + 1 " +
+           "WHERE u.id IN :ids AND (u.role IS NULL OR u.role <> :newRole)")
+    int setRoleByIds(@Param("ids") Collection<Long> ids,
+                     @Param("newRole") User.UserRole newRole,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE User u SET u.role = :newRole, u.updatedAt = :updatedAt, u.version = u.version + 1 " +
+           "WHERE (:role IS NULL OR u.role = :role) " +
+           "AND (:isActive IS NULL OR u.isActive = :isActive) " +
+           "AND (u.role IS NULL OR u.role <> :newRole)")
+    int setRoleByFilter(@Param("role") User.UserRole role,
+                        @Param("isActive") Boolean isActive,
+                        @Param("newRole") User.UserRole newRole,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM User u " +
+           "WHERE (:role IS NULL OR u.role = :role) " +
+           "AND (:isActive IS NULL OR u.isActive = :isActive)")
+    int deleteByFilter(@Param("role") User.UserRole role,
+                       @Param("isActive") Boolean isActive);
+
+    /**
+     * Stream users in id order through a server-side cursor. Must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.toast.common.dto.UserExportRow(" +
+           "u.id, u.username, u.email, u.firstName, u.lastName, u.isActive, u.role, u.createdAt, u.updatedAt) " +
+           "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    Stream<UserExportRow> streamForExport(@Param("afterId") Long afterId);
+}
@@ -14,6 +14,7 @@ interface User {
   role: string;
   createdAt: string;
   updatedAt: string;
+  version: number;
 }
 
 const UserDetail: React.FC = () => {
@@ -36,7 +37,7 @@ const UserDetail: React.FC = () => {
 
   const updateUserMutation = useMutation({
     mutationFn: async (updatedUser: Partial<User>) => {
-      const response = await axios.put(`/api/v1/users/${id}`, updatedUser);
+      const response = await axios.patch(`/api/v1/users/${id}`, updatedUser);
       return response.data;
     },
     onSuccess: () => {
@@ -56,7 +57,14 @@ const UserDetail: React.FC = () => {
 
   const handleSubmit = (e: React.FormEvent) => {
     e.preventDefault();
-    updateUserMutation.mutate(formData);
+    // Only send the fields that changed, plus the version they were edited against
+    const changes: Record<string, unknown> = { version: user?.version };
+    (Object.keys(formData) as (keyof User)[]).forEach((key) => {
+      if (formData[key] !== user?.[key]) {
+        changes[key] = formData[key];
+      }
+    });
+    updateUserMutation.mutate(changes as Partial<User>);
   };
 
   if (isLoading) {
@@ -23,15 +23,20 @@ interface User {
 const Users: React.FC = () => {
   const [searchTerm, setSearchTerm] = useState('');
 
+  // Terms of 3+ characters are searched server-side; shorter ones filter the loaded page
+  const serverSearch = searchTerm.trim().length >= 3;
+
   const { data: users, isLoading, error } = useQuery({
-    queryKey: ['users'],
+    queryKey: ['users', serverSearch ? searchTerm.trim() : ''],
     queryFn: async () => {
-      const response = await axios.get('/api/v1/users');
-      return response.data.data as User[];
+      const response = serverSearch
+        ? await axios.get('/api/v1/users/search', { params: { q: searchTerm.trim(), size: 100 } })
+        : await axios.get('/api/v1/users', { params: { size: 100 } });
+      return response.data.data.items as User[];
     },
   });
 
-  const filteredUsers = users?.filter(user =>
+  const filteredUsers = serverSearch ? users : users?.filter(user =>
     user.username.toLowerCase().includes(searchTerm.toLowerCase()) ||
     user.email.toLowerCase().includes(searchTerm.toLowerCase()) ||
     user.firstName.toLowerCase().includes(searchTerm.toLowerCase()) ||